@@ -0,0 +1,23 @@
+#!/bin/sh
+# Builds Digital Doilies and a class data sharing archive of the classes it loads at startup.
+#
+# The application is compiled into build/cds, leaving Eclipse's bin folder alone, and packaged as
+# DigitalDoilies.jar with a manifest kept outside the compiled classes. It is then started once with
+# digitaldoilies.exitAfterStartup set so the classes loaded before the first paint are recorded to
+# DigitalDoilies.jsa. Later launches map the archive rather than loading and verifying those classes.
+#
+# Requires JDK 13 or later and a display for the training run.
+
+set -e
+cd "$(dirname "$0")"
+
+rm -rf build/cds
+mkdir -p build/cds/classes
+javac --release 8 -d build/cds/classes src/*.java
+printf 'Main-Class: DigitalDoiliesWindow\n' > build/cds/MANIFEST.MF
+jar cfm DigitalDoilies.jar build/cds/MANIFEST.MF -C build/cds/classes .
+
+java -XX:ArchiveClassesAtExit=DigitalDoilies.jsa -Ddigitaldoilies.exitAfterStartup=true -jar DigitalDoilies.jar
+
+echo "Archive written, run with:"
+echo "  java -XX:SharedArchiveFile=DigitalDoilies.jsa -jar DigitalDoilies.jar"
@@ -0,0 +1,47 @@
+import java.awt.Graphics2D;
+
+/**
+ * <p>A brush which draws the points of a <b>Stroke</b> into every sector of the drawing</p>
+ *
+ * <p>Brushes hold no state of their own so a single instance of each is shared by every stroke.
+ * The available brushes are listed by <b>Brushes</b>.</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public interface Brush {
+
+	/**
+	 * Gets the id used to identify this brush when strokes are recorded or shared
+	 *
+	 * @return The id of this brush
+	 */
+	int getId();
+
+	/**
+	 * <p>Draws the part of a stroke from the specified point onwards</p>
+	 *
+	 * <p>Drawing a stroke in several parts must give the same result as drawing it all at once</p>
+	 *
+	 * @param g2 The graphics to draw with, which has the colour and hints of the drawing already set
+	 * @param stroke The stroke being drawn
+	 * @param firstPoint The index of the first point to draw
+	 * @param centreX The x coordinate of the centre of the drawing in g2
+	 * @param centreY The y coordinate of the centre of the drawing in g2
+	 * @param numberOfSectors The number of sectors to draw the stroke in
+	 */
+	void draw(Graphics2D g2, Stroke stroke, int firstPoint, int centreX, int centreY, int numberOfSectors);
+
+	/**
+	 * <p>Returns if strokes of this brush are drawn in the number of sectors they are given</p>
+	 *
+	 * <p>Only such strokes can be drawn once, into the single sector motif of a drawing which rotates copies of it
+	 * into every sector itself. By default brushes follow the sectors of the drawing.</p>
+	 *
+	 * @return true if strokes follow the sectors of the drawing, false if they keep their own number of sectors
+	 */
+	default boolean followsSectors() {
+		return true;
+	}
+
+}
@@ -0,0 +1,30 @@
+/**
+ * The brushes available to draw with, each identified by its position in <b>ALL</b>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class Brushes {
+
+	public static final Brush ROUND = new RoundBrush(0); // A solid round brush
+	public static final Brush SOFT = new DabBrush(1, "Soft", 0.5f, 1f, false, false); // A round brush with a soft edge
+	public static final Brush AIRBRUSH = new DabBrush(2, "Airbrush", 0f, 0.15f, false, true); // A faint, very soft brush which builds up and thins out when moved quickly
+	public static final Brush TEXTURED = new DabBrush(3, "Textured", 0.7f, 0.6f, true, true); // A grainy brush which thins out when moved quickly
+	public static final Brush FILL = new FillBrush(4); // Fills the clicked region in every sector rather than drawing strokes
+
+	public static final Brush[] ALL = { ROUND, SOFT, AIRBRUSH, TEXTURED, FILL }; // Every brush, indexed by id
+
+	private Brushes() {
+	}
+
+	/**
+	 * Gets a brush by its id
+	 *
+	 * @param id The id of the brush
+	 * @return The brush with that id, or the round brush if there is none
+	 */
+	public static Brush get(int id) {
+		return id >= 0 && id < ALL.length ? ALL[id] : ROUND;
+	}
+
+}
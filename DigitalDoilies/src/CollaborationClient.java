@@ -0,0 +1,493 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * <p>Connects a <b>DrawingPanel</b> to a <b>CollaborationServer</b> so its drawing is shared with other users</p>
+ *
+ * <p>The local user's strokes are drawn straight away as they always are, and sent to the server as they are drawn,
+ * so the local user never waits on the network. Strokes, sector changes, undos and clears from other users are
+ * received on a network thread and applied on the event dispatch thread a whole batch at a time.</p>
+ *
+ * <p>Strokes are ordered in every user's drawing by when the server received their ends. The server echoes the
+ * end of each local stroke, and until it does, strokes finished by other users are placed beneath it.</p>
+ *
+ * <p>Undoing removes the most recent stroke in the drawing for every user, whoever drew it. So that any stroke
+ * can still be undone by every user, the panel flattens no strokes while it is shared.</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class CollaborationClient implements DrawingListener, Runnable {
+
+	private static final int BUFFER_SIZE = 8192; // The initial size of the buffers in bytes
+
+	private DrawingPanel panel; // The panel being shared
+	private SocketChannel channel; // The channel to the server
+	private Selector selector; // Selector used by the network thread
+	private Thread thread; // The network thread
+
+	private int id; // The id given to this user by the server
+	private int nextStrokeId; // The id to be given to the next local stroke
+
+	private ByteBuffer in; // Bytes received but not yet applied, in write mode, used only by the network thread
+	private ByteBuffer out; // Bytes to be sent to the server, in write mode, guarded by this
+
+	private Map<Long, Stroke> strokesById; // Every stroke in the drawing by its combined id
+	private Map<Stroke, Long> idsByStroke; // The combined id of every stroke in the drawing
+	private Map<Long, Stroke> unfinished; // Strokes still being drawn by other users by their combined id
+	private Long currentKey; // The combined id of the local stroke being drawn, null if there is none
+	private List<Long> unconfirmed; // The combined ids of local strokes finished but not yet echoed by the server, oldest first
+
+	private boolean applyingRemote; // True while changes from other users are applied, so they are not sent back
+
+	/**
+	 * Connects the specified panel to the server at the specified address
+	 *
+	 * @param panel The panel to be shared
+	 * @param host The name of the server host
+	 * @param port The port the server is listening on
+	 * @throws IOException If the connection fails
+	 */
+	public CollaborationClient(DrawingPanel panel, String host, int port) throws IOException {
+
+		ByteBuffer welcome = ByteBuffer.allocate(CollaborationProtocol.LENGTH_BYTES + 9);
+		int others;
+
+		this.panel = panel;
+		this.in = ByteBuffer.allocate(BUFFER_SIZE);
+		this.out = ByteBuffer.allocate(BUFFER_SIZE);
+
+		this.strokesById = new HashMap<Long, Stroke>();
+		this.idsByStroke = new IdentityHashMap<Stroke, Long>();
+		this.unfinished = new LinkedHashMap<Long, Stroke>();
+		this.unconfirmed = new ArrayList<Long>();
+
+		// Wait for the server to give this user an id before sharing anything
+
+		this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+		this.channel.socket().setTcpNoDelay(true);
+
+		while (welcome.hasRemaining()) {
+			if (channel.read(welcome) < 0) throw new IOException("Collaboration server closed the connection");
+		}
+
+		welcome.flip();
+
+		if (welcome.getShort() != 9 || welcome.get() != CollaborationProtocol.WELCOME) {
+			channel.close();
+			throw new IOException("Unexpected reply from collaboration server");
+		}
+
+		this.id = welcome.getInt();
+		others = welcome.getInt();
+
+		this.channel.configureBlocking(false);
+		this.selector = Selector.open();
+		this.channel.register(selector, SelectionKey.OP_READ);
+
+		panel.addDrawingListener(this);
+		panel.setCollaborating(true);
+
+		// The first user decides the number of sectors for everyone
+		if (others == 0) {
+			sectorsChanged(panel.getSectors());
+		}
+
+		this.thread = new Thread(this, "Collaboration client");
+		this.thread.setDaemon(true);
+		this.thread.start();
+
+	}
+
+	/**
+	 * Gets the id given to this user by the server
+	 *
+	 * @return The id of this user
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Disconnects from the server, leaving the drawing as it is
+	 */
+	public void close() {
+
+		panel.removeDrawingListener(this);
+		panel.setCollaborating(false);
+		thread.interrupt();
+		selector.wakeup();
+
+	}
+
+	@Override
+	public void run() {
+
+		Iterator<SelectionKey> it;
+		SelectionKey key;
+
+		try {
+
+			while (!Thread.currentThread().isInterrupted()) {
+
+				selector.select();
+
+				it = selector.selectedKeys().iterator();
+
+				while (it.hasNext()) {
+
+					key = it.next();
+					it.remove();
+
+					if (key.isValid() && key.isReadable()) {
+						if (channel.read(in) < 0) throw new IOException("Collaboration server closed the connection");
+						receive();
+					}
+
+				}
+
+				send();
+
+			}
+
+		} catch (IOException | RuntimeException e) {
+			// Invalid frames from the server end the collaboration as a lost connection does
+			System.err.println("Collaboration stopped: " + e.getMessage());
+		} finally {
+
+			try {
+				channel.close();
+				selector.close();
+			} catch (IOException e) {
+				// The connection is being discarded anyway
+			}
+
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					panel.removeDrawingListener(CollaborationClient.this);
+					panel.setCollaborating(false);
+				}
+			});
+
+		}
+
+	}
+
+	// Hands every complete frame received to the event dispatch thread in one batch, checking each is valid so it can be applied safely
+	private void receive() {
+
+		final ByteBuffer batch;
+		int start;
+		int length;
+		byte type;
+
+		in.flip();
+		start = in.position();
+
+		while ((length = CollaborationProtocol.peekFrame(in)) >= 0) {
+
+			type = in.get(in.position() + CollaborationProtocol.LENGTH_BYTES);
+
+			if (type == CollaborationProtocol.WELCOME || length != 1 + CollaborationProtocol.SENDER_BYTES + CollaborationProtocol.serverPayload(type)) {
+				throw new IllegalStateException("Invalid collaboration frame of type " + type + " and length " + length);
+			}
+
+			in.position(in.position() + CollaborationProtocol.LENGTH_BYTES + length);
+		}
+
+		if (in.position() > start) {
+
+			batch = ByteBuffer.allocate(in.position() - start);
+			batch.put((ByteBuffer) in.duplicate().position(start).limit(in.position()));
+			batch.flip();
+
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					apply(batch);
+				}
+			});
+
+		}
+
+		in.compact();
+
+	}
+
+	// Writes everything queued by the event dispatch thread
+	private void send() throws IOException {
+
+		SelectionKey key = channel.keyFor(selector);
+
+		synchronized (this) {
+
+			if (out.position() > 0) {
+				out.flip();
+				channel.write(out);
+				out.compact();
+			}
+
+			// Wake when the channel can accept the rest if everything could not be sent
+			key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+
+		}
+
+	}
+
+	// Queues a frame for the server and wakes the network thread to send it
+	private void queue(byte type, int... payload) {
+
+		synchronized (this) {
+
+			out = CollaborationProtocol.ensureRemaining(out, CollaborationProtocol.LENGTH_BYTES + 1 + payload.length * 4);
+			out.putShort((short) (1 + payload.length * 4));
+			out.put(type);
+			for (int value : payload) {
+				out.putInt(value);
+			}
+
+		}
+
+		selector.wakeup();
+
+	}
+
+	// Applies a batch of frames from other users to the panel
+	private void apply(ByteBuffer batch) {
+
+		Map<Stroke, Integer> undrawn = new LinkedHashMap<Stroke, Integer>(); // First undrawn point of each stroke extended in this batch
+		Stroke stroke;
+		Integer first;
+		byte type;
+		int user;
+		long key;
+
+		applyingRemote = true;
+
+		try {
+
+			while (batch.hasRemaining()) {
+
+				batch.getShort();
+				type = batch.get();
+				user = batch.getInt();
+
+				switch (type) {
+
+				case CollaborationProtocol.STROKE_BEGIN:
+				case CollaborationProtocol.FILL_BEGIN:
+					key = CollaborationProtocol.strokeKey(user, batch.getInt());
+					if (type == CollaborationProtocol.FILL_BEGIN) {
+						stroke = new FillStroke(batch.getInt(), new Color(batch.getInt(), true));
+					} else {
+						stroke = new Stroke(batch.getInt(), new Color(batch.getInt(), true), batch.getInt() != 0, Brushes.get(batch.getInt()));
+					}
+					unfinished.put(key, stroke);
+					strokesById.put(key, stroke);
+					idsByStroke.put(stroke, key);
+					panel.addRemoteStroke(stroke);
+					break;
+
+				case CollaborationProtocol.STROKE_POINT:
+					stroke = unfinished.get(CollaborationProtocol.strokeKey(user, batch.getInt()));
+					if (stroke != null) {
+						if (!undrawn.containsKey(stroke)) undrawn.put(stroke, stroke.points.size());
+						stroke.points.add(new StrokePoint(batch.getInt(), batch.getInt(), batch.getInt(), batch.getInt()));
+					} else {
+						batch.position(batch.position() + 16);
+					}
+					break;
+
+				case CollaborationProtocol.STROKE_END:
+					key = CollaborationProtocol.strokeKey(user, batch.getInt());
+					if (user == id) {
+						// The server has placed a local stroke, so later strokes from other users go above it
+						unconfirmed.remove(Long.valueOf(key));
+						break;
+					}
+					stroke = unfinished.remove(key);
+					if (stroke != null) {
+						first = undrawn.remove(stroke);
+						if (first != null) panel.extendRemoteStroke(stroke, first);
+						panel.finishRemoteStroke(stroke, unconfirmed.size());
+					}
+					break;
+
+				case CollaborationProtocol.SECTORS:
+					panel.changeSectors(batch.getInt());
+					break;
+
+				case CollaborationProtocol.CLEAR:
+					panel.clearPoints();
+					break;
+
+				case CollaborationProtocol.UNDO:
+					key = CollaborationProtocol.strokeKey(batch.getInt(), batch.getInt());
+					stroke = strokesById.remove(key);
+					unconfirmed.remove(Long.valueOf(key));
+					if (stroke != null) {
+						idsByStroke.remove(stroke);
+						unfinished.remove(key);
+						undrawn.remove(stroke);
+						panel.removeStroke(stroke);
+					}
+					break;
+
+				case CollaborationProtocol.LEAVE:
+					finishStrokesOf(user, undrawn);
+					break;
+
+				}
+
+			}
+
+			// Draw the new points of strokes still being drawn once for the whole batch
+			for (Map.Entry<Stroke, Integer> e : undrawn.entrySet()) {
+				panel.extendRemoteStroke(e.getKey(), e.getValue());
+			}
+
+		} finally {
+			applyingRemote = false;
+		}
+
+	}
+
+	// Finishes any strokes left unfinished by a user who has left
+	private void finishStrokesOf(int user, Map<Stroke, Integer> undrawn) {
+
+		Iterator<Map.Entry<Long, Stroke>> it = unfinished.entrySet().iterator();
+		Map.Entry<Long, Stroke> e;
+		Integer first;
+
+		while (it.hasNext()) {
+
+			e = it.next();
+
+			if ((int) (e.getKey() >> 32) == user) {
+				first = undrawn.remove(e.getValue());
+				if (first != null) panel.extendRemoteStroke(e.getValue(), first);
+				panel.finishRemoteStroke(e.getValue(), unconfirmed.size());
+				it.remove();
+			}
+
+		}
+
+	}
+
+	@Override
+	public void strokeBegun(Stroke stroke) {
+
+		int strokeId = nextStrokeId++;
+		long key = CollaborationProtocol.strokeKey(id, strokeId);
+
+		strokesById.put(key, stroke);
+		idsByStroke.put(stroke, key);
+		currentKey = key;
+
+		if (stroke instanceof FillStroke) {
+			queue(CollaborationProtocol.FILL_BEGIN, strokeId, ((FillStroke) stroke).getSectors(), stroke.getColour().getRGB());
+		} else {
+			queue(CollaborationProtocol.STROKE_BEGIN, strokeId, stroke.getBrushSize(), stroke.getColour().getRGB(), stroke.getReflected() ? 1 : 0, stroke.getBrush().getId());
+		}
+	}
+
+	@Override
+	public void strokePointAdded(Stroke stroke, StrokePoint point) {
+
+		Long key = idsByStroke.get(stroke);
+
+		if (key != null) {
+			queue(CollaborationProtocol.STROKE_POINT, (int) (long) key, point.x, point.y, point.reflection.x, point.reflection.y);
+		}
+	}
+
+	@Override
+	public void strokeFinished(Stroke stroke, int above) {
+
+		Long key = idsByStroke.get(stroke);
+
+		// Strokes finished by other users are notified too, but only the user who drew a stroke ends it
+		if (key != null && !applyingRemote) {
+			if (key.equals(currentKey)) currentKey = null;
+			unconfirmed.add(key);
+			queue(CollaborationProtocol.STROKE_END, (int) (long) key);
+		}
+	}
+
+	@Override
+	public void sectorsChanged(int numberOfSectors) {
+		if (!applyingRemote) queue(CollaborationProtocol.SECTORS, numberOfSectors);
+	}
+
+	@Override
+	public void sectorsShown(boolean showSectors) {
+		// Showing sector lines is a local preference so is not shared
+	}
+
+	@Override
+	public void brushColourChanged(Color colour) {
+		// Each user has their own brush so it is not shared
+	}
+
+	@Override
+	public void strokeUndone(Stroke stroke) {
+
+		Long key;
+
+		// Strokes undone by other users have already been forgotten
+		if (applyingRemote) return;
+
+		key = idsByStroke.remove(stroke);
+
+		if (key != null) {
+			strokesById.remove(key);
+			unconfirmed.remove(key);
+			queue(CollaborationProtocol.UNDO, (int) (key >> 32), (int) (long) key);
+		}
+	}
+
+	@Override
+	public void drawingCleared() {
+
+		List<Long> keep = new ArrayList<Long>(unfinished.keySet());
+
+		// Strokes still being drawn survive a clear, both this user's and other users', as they do on every panel
+		if (currentKey != null) keep.add(currentKey);
+		if (!applyingRemote) queue(CollaborationProtocol.CLEAR);
+
+		strokesById.keySet().retainAll(keep);
+		idsByStroke.values().retainAll(keep);
+		unconfirmed.clear();
+	}
+
+	@Override
+	public void strokesFlattened(List<Stroke> flattened, BufferedImage baseLayer) {
+
+		Long key;
+
+		// Flattened strokes can no longer be undone by anyone here, so their ids are forgotten
+		for (Stroke s : flattened) {
+			key = idsByStroke.remove(s);
+			if (key != null) {
+				strokesById.remove(key);
+				unconfirmed.remove(key);
+			}
+		}
+
+	}
+
+}
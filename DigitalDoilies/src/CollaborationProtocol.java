@@ -0,0 +1,163 @@
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Constants and helpers for the binary protocol used to share a drawing between collaborating users</p>
+ *
+ * <p>Every message is a frame made of a two byte length, followed by that many bytes holding a one byte
+ * message type and the message payload. Frames sent by the server also hold the four byte id of the
+ * user the message came from straight after the type. All values are big-endian ints.</p>
+ *
+ * <p>Payloads sent by a user:</p>
+ *
+ * <ul>
+ * <li>STROKE_BEGIN: stroke id, brush size, colour ARGB, reflected (1 or 0), brush id</li>
+ * <li>FILL_BEGIN: stroke id, number of sectors the region was found with, colour ARGB</li>
+ * <li>STROKE_POINT: stroke id, x, y, reflection x, reflection y, or for a fill two points for each span</li>
+ * <li>STROKE_END: stroke id</li>
+ * <li>SECTORS: number of sectors</li>
+ * <li>CLEAR: empty</li>
+ * <li>UNDO: id of the user who drew the stroke, stroke id</li>
+ * </ul>
+ *
+ * <p>The server sends STROKE_END back to the user who sent it as well, so each user knows the order of every
+ * stroke in the drawing: strokes are ordered by when the server received their STROKE_END.</p>
+ *
+ * <p>The server also sends WELCOME with the number of other connected users to each user when they join,
+ * with the receiving user's id in place of the sender, and LEAVE with an empty payload when a user disconnects</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class CollaborationProtocol {
+
+	public static final byte WELCOME = 0;
+	public static final byte LEAVE = 1;
+	public static final byte STROKE_BEGIN = 2;
+	public static final byte STROKE_POINT = 3;
+	public static final byte STROKE_END = 4;
+	public static final byte SECTORS = 5;
+	public static final byte CLEAR = 6;
+	public static final byte UNDO = 7;
+	public static final byte FILL_BEGIN = 8;
+
+	public static final int DEFAULT_PORT = 5151; // The port used when none is specified
+
+	public static final int LENGTH_BYTES = 2; // The number of bytes holding the length of each frame
+	public static final int SENDER_BYTES = 4; // The number of bytes holding the sender id in frames sent by the server
+	public static final int MAXIMUM_FRAME = 64; // The largest number of bytes a frame may hold after its length
+
+	private CollaborationProtocol() {
+	}
+
+	/**
+	 * Returns the length of the next complete frame in a buffer, without consuming it
+	 *
+	 * @param buffer A buffer in read mode positioned at the start of a frame
+	 * @return The number of bytes after the length field, or -1 if the whole frame is not yet in the buffer
+	 * @throws IllegalStateException If the frame length is invalid
+	 */
+	public static int peekFrame(ByteBuffer buffer) {
+		return peekFrame(buffer, MAXIMUM_FRAME);
+	}
+
+	/**
+	 * Returns the length of the next complete frame in a buffer, without consuming it
+	 *
+	 * @param buffer A buffer in read mode positioned at the start of a frame
+	 * @param maximum The largest length allowed
+	 * @return The number of bytes after the length field, or -1 if the whole frame is not yet in the buffer
+	 * @throws IllegalStateException If the frame length is invalid
+	 */
+	public static int peekFrame(ByteBuffer buffer, int maximum) {
+
+		int length;
+
+		if (buffer.remaining() < LENGTH_BYTES) return -1;
+
+		length = buffer.getShort(buffer.position()) & 0xFFFF;
+
+		if (length < 1 || length > maximum) {
+			throw new IllegalStateException("Invalid collaboration frame length " + length);
+		}
+
+		return buffer.remaining() >= LENGTH_BYTES + length ? length : -1;
+	}
+
+	/**
+	 * Gets the size of the payload of a message sent by a user
+	 *
+	 * @param type The type of the message
+	 * @return The number of bytes after the type, or -1 if users may not send messages of the type
+	 */
+	public static int userPayload(byte type) {
+
+		switch (type) {
+		case STROKE_BEGIN:
+		case STROKE_POINT:
+			return 20;
+		case STROKE_END:
+		case SECTORS:
+			return 4;
+		case CLEAR:
+			return 0;
+		case UNDO:
+			return 8;
+		case FILL_BEGIN:
+			return 12;
+		default:
+			return -1;
+		}
+
+	}
+
+	/**
+	 * Gets the size of the payload of a message sent by the server, after the type and the sender id
+	 *
+	 * @param type The type of the message
+	 * @return The number of bytes after the sender id, or -1 if the server does not send messages of the type
+	 */
+	public static int serverPayload(byte type) {
+
+		switch (type) {
+		case WELCOME:
+			return 4;
+		case LEAVE:
+			return 0;
+		default:
+			return userPayload(type);
+		}
+
+	}
+
+	/**
+	 * Returns a buffer holding at least the specified number of free bytes, copying the contents of the given buffer if it is too small
+	 *
+	 * @param buffer A buffer in write mode
+	 * @param needed The number of free bytes required
+	 * @return The given buffer if it has room, else a larger buffer holding the same contents
+	 */
+	public static ByteBuffer ensureRemaining(ByteBuffer buffer, int needed) {
+
+		ByteBuffer larger;
+
+		if (buffer.remaining() >= needed) return buffer;
+
+		larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + needed));
+		buffer.flip();
+		larger.put(buffer);
+
+		return larger;
+	}
+
+	/**
+	 * Creates a stroke id which is unique across all users
+	 *
+	 * @param user The id of the user who drew the stroke
+	 * @param stroke The id given to the stroke by that user
+	 * @return The combined id
+	 */
+	public static long strokeKey(int user, int stroke) {
+		return ((long) user << 32) | (stroke & 0xFFFFFFFFL);
+	}
+
+}
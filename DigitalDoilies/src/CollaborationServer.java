@@ -0,0 +1,520 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Server which shares a drawing between collaborating users using the <b>CollaborationProtocol</b></p>
+ *
+ * <p>A single thread handles every connection with non-blocking channels. Frames received from each user
+ * are checked to be a known type and the size of that type, then stamped with the user's id and queued for
+ * every other user. A user sending an invalid frame is disconnected. Queued frames are written at most once
+ * every <b>BATCH_INTERVAL</b> milliseconds, so many small stroke updates go out in a single write.</p>
+ *
+ * <p>Strokes are ordered by when their STROKE_END reaches the server, which echoes it to the sender too
+ * so every user can order their own strokes among everyone else's in the same way.</p>
+ *
+ * <p>The frames of each stroke in the drawing are kept, so users joining are sent the drawing so far. Undone
+ * strokes are forgotten, as are finished strokes when the drawing is cleared. The drawing is sent to a joining
+ * user a chunk at a time as their channel accepts it, with frames forwarded meanwhile held back behind it.</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class CollaborationServer implements Runnable {
+
+	private static final long BATCH_INTERVAL = 5; // The minimum number of milliseconds between writes to each user
+	private static final int BUFFER_SIZE = 8192; // The initial size of each user's buffers in bytes
+	private static final int MAXIMUM_PENDING = 4 * 1024 * 1024; // The number of unsent bytes after which a slow user is disconnected
+	private static final int STROKE_BUFFER_SIZE = 256; // The initial size of the buffer holding the frames of a stroke
+	private static final int HISTORY_CHUNK = 64 * 1024; // The most bytes of the drawing so far queued for a joining user at once
+	private static final int PAYLOAD_OFFSET = CollaborationProtocol.LENGTH_BYTES + 1 + CollaborationProtocol.SENDER_BYTES; // The position of the payload in a stamped frame
+
+	private ServerSocketChannel serverChannel; // The channel accepting new users
+	private Selector selector; // Selector for all of the channels
+	private List<Connection> connections; // The currently connected users
+	private Thread thread; // The thread running the server, null if it is not running
+
+	private Map<Long, ByteBuffer> finishedStrokes; // The frames of each finished stroke in the drawing by stroke key, in the order they were finished
+	private Map<Long, ByteBuffer> unfinishedStrokes; // The frames so far of each stroke still being drawn by stroke key, in the order they were begun
+	private ByteBuffer lastSectors; // The frame which last changed the number of sectors, null if there has not been one
+	private ByteBuffer frame; // Reusable buffer holding a frame being forwarded
+	private int nextId; // The id to be given to the next user to join
+
+	/**
+	 * Creates a new server listening on the specified port of all local addresses
+	 *
+	 * @param port The port to listen on, or 0 to pick any free port
+	 * @throws IOException If the port could not be opened
+	 */
+	public CollaborationServer(int port) throws IOException {
+		this(new InetSocketAddress(port));
+	}
+
+	/**
+	 * Creates a new server listening on the specified address
+	 *
+	 * @param address The address to listen on
+	 * @throws IOException If the address could not be opened
+	 */
+	public CollaborationServer(InetSocketAddress address) throws IOException {
+
+		this.connections = new ArrayList<Connection>();
+		this.finishedStrokes = new LinkedHashMap<Long, ByteBuffer>();
+		this.unfinishedStrokes = new LinkedHashMap<Long, ByteBuffer>();
+		this.lastSectors = null;
+		this.frame = ByteBuffer.allocate(CollaborationProtocol.LENGTH_BYTES + CollaborationProtocol.MAXIMUM_FRAME + 4);
+		this.nextId = 1;
+
+		this.selector = Selector.open();
+		this.serverChannel = ServerSocketChannel.open();
+		this.serverChannel.bind(address);
+		this.serverChannel.configureBlocking(false);
+		this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+	}
+
+	/**
+	 * Gets the port the server is listening on
+	 *
+	 * @return The local port of the server
+	 */
+	public int getPort() {
+		return serverChannel.socket().getLocalPort();
+	}
+
+	/**
+	 * Starts the server on a new daemon thread
+	 */
+	public synchronized void start() {
+
+		if (thread == null) {
+			thread = new Thread(this, "Collaboration server");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+	}
+
+	/**
+	 * Stops the server and disconnects every user
+	 */
+	public synchronized void close() {
+
+		if (thread != null) {
+			thread.interrupt();
+			selector.wakeup();
+			thread = null;
+		}
+
+	}
+
+	@Override
+	public void run() {
+
+		long lastFlush = System.currentTimeMillis();
+		long wait;
+		Iterator<SelectionKey> it;
+		SelectionKey key;
+
+		try {
+
+			while (!Thread.currentThread().isInterrupted()) {
+
+				wait = Math.max(1, BATCH_INTERVAL - (System.currentTimeMillis() - lastFlush));
+				selector.select(wait);
+
+				it = selector.selectedKeys().iterator();
+
+				while (it.hasNext()) {
+
+					key = it.next();
+					it.remove();
+
+					if (!key.isValid()) continue;
+
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						if (key.isReadable()) read((Connection) key.attachment());
+						if (key.isValid() && key.isWritable()) write((Connection) key.attachment());
+					}
+
+				}
+
+				// Send everything queued since the last batch
+				if (System.currentTimeMillis() - lastFlush >= BATCH_INTERVAL) {
+					for (Connection c : new ArrayList<Connection>(connections)) {
+						write(c);
+					}
+					lastFlush = System.currentTimeMillis();
+				}
+
+			}
+
+		} catch (IOException e) {
+			System.err.println("Collaboration server stopped: " + e.getMessage());
+		} finally {
+			shutdown();
+		}
+
+	}
+
+	// Accepts a new user, sending them their id and the drawing so far
+	private void accept() throws IOException {
+
+		SocketChannel channel = serverChannel.accept();
+		Connection connection;
+
+		if (channel == null) return;
+
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+
+		connection = new Connection(nextId++, channel);
+		connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+
+		frame.clear();
+		frame.putShort((short) 9);
+		frame.put(CollaborationProtocol.WELCOME);
+		frame.putInt(connection.id);
+		frame.putInt(connections.size());
+		frame.flip();
+		connection.queue(frame);
+
+		if (lastSectors != null) {
+			connection.queue(lastSectors.duplicate());
+		}
+
+		// Frame buffers are never changed before their position, so views of them hold the drawing as it is now
+		for (ByteBuffer frames : finishedStrokes.values()) {
+			connection.history.add((ByteBuffer) frames.duplicate().flip());
+		}
+
+		for (ByteBuffer frames : unfinishedStrokes.values()) {
+			connection.history.add((ByteBuffer) frames.duplicate().flip());
+		}
+
+		connections.add(connection);
+
+	}
+
+	// Reads all available frames from a user and queues them for every other user
+	private void read(Connection connection) {
+
+		int read;
+		int length;
+		byte type;
+		ByteBuffer payload;
+
+		try {
+			read = connection.channel.read(connection.in);
+		} catch (IOException e) {
+			read = -1;
+		}
+
+		if (read < 0) {
+			disconnect(connection);
+			return;
+		}
+
+		connection.in.flip();
+
+		try {
+
+			// Frames must still fit within the maximum once stamped with the sender id
+			while ((length = CollaborationProtocol.peekFrame(connection.in, CollaborationProtocol.MAXIMUM_FRAME - CollaborationProtocol.SENDER_BYTES)) >= 0) {
+
+				connection.in.getShort();
+				type = connection.in.get();
+
+				if (length != 1 + CollaborationProtocol.userPayload(type)) {
+					throw new IllegalStateException("Invalid collaboration frame of type " + type + " and length " + length);
+				}
+
+				// Stamp the frame with the id of the user it came from
+				frame.clear();
+				frame.putShort((short) (length + CollaborationProtocol.SENDER_BYTES));
+				frame.put(type);
+				frame.putInt(connection.id);
+
+				payload = connection.in.slice();
+				payload.limit(length - 1);
+				frame.put(payload);
+				frame.flip();
+
+				connection.in.position(connection.in.position() + length - 1);
+
+				forward(connection, type, frame);
+
+			}
+
+		} catch (IllegalStateException e) {
+			connection.in.clear();
+			disconnect(connection);
+			return;
+		}
+
+		connection.in.compact();
+
+	}
+
+	// Queues a stamped frame for every user other than the sender, the sender too if it ends a stroke, and updates the drawing so far
+	private void forward(Connection sender, byte type, ByteBuffer stamped) {
+
+		int payload = stamped.position() + PAYLOAD_OFFSET;
+		long key;
+		ByteBuffer frames;
+
+		switch (type) {
+
+		case CollaborationProtocol.STROKE_BEGIN:
+		case CollaborationProtocol.FILL_BEGIN:
+			frames = ByteBuffer.allocate(STROKE_BUFFER_SIZE);
+			frames.put(stamped.duplicate());
+			unfinishedStrokes.put(CollaborationProtocol.strokeKey(sender.id, stamped.getInt(payload)), frames);
+			break;
+
+		case CollaborationProtocol.STROKE_POINT:
+			key = CollaborationProtocol.strokeKey(sender.id, stamped.getInt(payload));
+			frames = unfinishedStrokes.get(key);
+			if (frames != null) {
+				frames = CollaborationProtocol.ensureRemaining(frames, stamped.remaining());
+				frames.put(stamped.duplicate());
+				unfinishedStrokes.put(key, frames);
+			}
+			break;
+
+		case CollaborationProtocol.STROKE_END:
+			key = CollaborationProtocol.strokeKey(sender.id, stamped.getInt(payload));
+			frames = unfinishedStrokes.remove(key);
+			if (frames != null) finishStroke(key, frames, stamped);
+			break;
+
+		case CollaborationProtocol.UNDO:
+			key = CollaborationProtocol.strokeKey(stamped.getInt(payload), stamped.getInt(payload + 4));
+			finishedStrokes.remove(key);
+			unfinishedStrokes.remove(key);
+			break;
+
+		case CollaborationProtocol.CLEAR:
+			// Strokes still being drawn survive a clear, as they do on every user's panel
+			finishedStrokes.clear();
+			break;
+
+		case CollaborationProtocol.SECTORS:
+			lastSectors = ByteBuffer.allocate(stamped.remaining());
+			lastSectors.put(stamped.duplicate());
+			lastSectors.flip();
+			break;
+
+		case CollaborationProtocol.LEAVE:
+			finishStrokesOf(sender.id);
+			break;
+
+		}
+
+		for (Connection c : new ArrayList<Connection>(connections)) {
+			if (c != sender || type == CollaborationProtocol.STROKE_END) c.queue(stamped.duplicate());
+		}
+
+	}
+
+	// Moves a stroke to the end of the finished strokes with its end frame, trimming its buffer to the frames it holds
+	private void finishStroke(long key, ByteBuffer frames, ByteBuffer end) {
+
+		ByteBuffer finished;
+
+		frames.flip();
+		finished = ByteBuffer.allocate(frames.remaining() + end.remaining());
+		finished.put(frames);
+		finished.put(end.duplicate());
+
+		finishedStrokes.put(key, finished);
+
+	}
+
+	// Finishes the strokes left unfinished by a user who has left, in the order they were begun as users finish them
+	private void finishStrokesOf(int user) {
+
+		Iterator<Map.Entry<Long, ByteBuffer>> it = unfinishedStrokes.entrySet().iterator();
+		Map.Entry<Long, ByteBuffer> e;
+		ByteBuffer end;
+
+		while (it.hasNext()) {
+
+			e = it.next();
+
+			if ((int) (e.getKey() >> 32) == user) {
+
+				end = ByteBuffer.allocate(CollaborationProtocol.LENGTH_BYTES + 9);
+				end.putShort((short) 9);
+				end.put(CollaborationProtocol.STROKE_END);
+				end.putInt(user);
+				end.putInt((int) (long) e.getKey());
+				end.flip();
+
+				it.remove();
+				finishStroke(e.getKey(), e.getValue(), end);
+
+			}
+
+		}
+
+	}
+
+	// Writes as much of a user's queued frames as the channel will accept
+	private void write(Connection connection) {
+
+		connection.fill();
+
+		if (connection.out.position() == 0) return;
+
+		connection.out.flip();
+
+		try {
+			connection.channel.write(connection.out);
+		} catch (IOException e) {
+			connection.out.clear();
+			disconnect(connection);
+			return;
+		}
+
+		connection.out.compact();
+
+		// Wait for the channel to become writable if everything could not be sent, or the drawing so far is still being sent
+		if (connection.key.isValid()) {
+			connection.key.interestOps(connection.out.position() > 0 || !connection.history.isEmpty() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+		}
+
+		// The drawing so far is only queued as it is sent so does not count, but frames held back behind it do
+		if (connection.out.position() > MAXIMUM_PENDING || (connection.held != null && connection.held.position() > MAXIMUM_PENDING)) {
+			disconnect(connection);
+		}
+
+	}
+
+	// Closes a user's connection and tells the other users they have left
+	private void disconnect(Connection connection) {
+
+		if (!connections.remove(connection)) return;
+
+		connection.key.cancel();
+
+		try {
+			connection.channel.close();
+		} catch (IOException e) {
+			// The connection is being discarded anyway
+		}
+
+		frame.clear();
+		frame.putShort((short) 5);
+		frame.put(CollaborationProtocol.LEAVE);
+		frame.putInt(connection.id);
+		frame.flip();
+
+		forward(connection, CollaborationProtocol.LEAVE, frame);
+
+	}
+
+	// Closes every channel once the server has stopped
+	private void shutdown() {
+
+		for (Connection c : connections) {
+			try {
+				c.channel.close();
+			} catch (IOException e) {
+				// The server is stopping anyway
+			}
+		}
+
+		connections.clear();
+
+		try {
+			serverChannel.close();
+			selector.close();
+		} catch (IOException e) {
+			// The server is stopping anyway
+		}
+
+	}
+
+	/**
+	 * A connected user and their buffers
+	 *
+	 * @author Oliver Martin (ojm1g16)
+	 *
+	 */
+	private static class Connection {
+
+		private final int id; // The id given to the user
+		private final SocketChannel channel; // The channel to the user
+		private SelectionKey key; // The key of the channel in the selector
+		private ByteBuffer in; // Bytes received but not yet forwarded, in write mode
+		private ByteBuffer out; // Bytes queued to be sent, in write mode
+		private ArrayDeque<ByteBuffer> history; // Views of the drawing so far still to be queued for a joining user, oldest first
+		private ByteBuffer held; // Frames held back until the drawing so far has been queued, in write mode, null if there are none
+
+		private Connection(int id, SocketChannel channel) {
+			this.id = id;
+			this.channel = channel;
+			this.in = ByteBuffer.allocate(BUFFER_SIZE);
+			this.out = ByteBuffer.allocate(BUFFER_SIZE);
+			this.history = new ArrayDeque<ByteBuffer>();
+		}
+
+		// Appends the remaining bytes of a buffer to the queue to be sent, or holds them back behind the drawing so far
+		private void queue(ByteBuffer bytes) {
+
+			if (history.isEmpty()) {
+				out = CollaborationProtocol.ensureRemaining(out, bytes.remaining());
+				out.put(bytes);
+			} else {
+				if (held == null) held = ByteBuffer.allocate(BUFFER_SIZE);
+				held = CollaborationProtocol.ensureRemaining(held, bytes.remaining());
+				held.put(bytes);
+			}
+
+		}
+
+		// Queues the next chunk of the drawing so far, then the frames held back once all of it has been queued
+		private void fill() {
+
+			ByteBuffer next;
+			ByteBuffer chunk;
+
+			while (!history.isEmpty() && out.position() < HISTORY_CHUNK) {
+
+				next = history.peek();
+				chunk = next.slice();
+				chunk.limit(Math.min(chunk.remaining(), HISTORY_CHUNK - out.position()));
+
+				out = CollaborationProtocol.ensureRemaining(out, chunk.remaining());
+				out.put(chunk);
+
+				next.position(next.position() + chunk.limit());
+				if (!next.hasRemaining()) history.remove();
+
+			}
+
+			if (history.isEmpty() && held != null) {
+				held.flip();
+				out = CollaborationProtocol.ensureRemaining(out, held.remaining());
+				out.put(held);
+				held = null;
+			}
+
+		}
+
+	}
+
+}
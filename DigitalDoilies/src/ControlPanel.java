@@ -5,7 +5,9 @@ import java.awt.image.BufferedImage;
 
 import javax.swing.JButton;
 import javax.swing.JColorChooser;
+import javax.swing.JComboBox;
 import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
 import javax.swing.JToggleButton;
@@ -28,6 +30,9 @@ public class ControlPanel extends JPanel {
 
 	private JLabel sectorLabel; // Label to identify the sector slider
 	private JSlider sectorSlider; // Button to adjust number of sectors used
+	private boolean flattenedNoticeShown; // True once the user has been told flattened strokes keep their number of sectors
+
+	private JComboBox<Brush> brushBox; // Box to choose the brush to draw with
 
 	private JLabel brushSizeLabel; // Label to identify the brush size slider
 	private JSlider brushSizeSlider; // Button to change brush size
@@ -37,15 +42,21 @@ public class ControlPanel extends JPanel {
 
 	private JButton colourButton; // Button to show JColorChooser to set brush colour
 
+	private JComboBox<RenderQuality> qualityBox; // Box to choose the rendering preset of the drawing
+	private JToggleButton draftButton; // Button to toggle drawing strokes in draft quality while dragging
+	private JComboBox<DoilyAnimator.Mode> animationBox; // Box to choose how the drawing is animated
+
 	private JButton saveButton; // Button to save current image to the gallery
 
+	private JButton replayButton; // Button to open a window replaying the drawing session
+
 	private static final int SECTOR_MAX = 30; // Default maximum number of sectors for the slider
 	private static final int SECTOR_MIN = 1; // Default minimum number of sectors for the slider
 
 	private static final int BRUSH_MAX = 30; // Default maximum brush size for the slider
 	private static final int BRUSH_MIN = 2; // Default minimum brush size for slider
 
-	private static final int PANEL_ROWS = 10; // Number of rows for the control panel grid layout
+	private static final int PANEL_ROWS = 15; // Number of rows for the control panel grid layout
 	private static final int PANEL_COLS = 1; // Number of columns for the control panel grid layout
 
 	/**
@@ -91,8 +102,18 @@ public class ControlPanel extends JPanel {
 			@Override
 			public void stateChanged(ChangeEvent e) {
 				sectorLabel.setText("Number of sectors (" + sectorSlider.getValue() + ")");
-				if (!sectorSlider.getValueIsAdjusting()) {
+				if (sectorSlider.getValueIsAdjusting()) {
+					drawingPanel.previewSectors(sectorSlider.getValue());
+				} else {
 					drawingPanel.changeSectors(sectorSlider.getValue());
+					
+					// Flattened strokes are only an image, so the user is told once why they do not change
+					if (drawingPanel.getFlattenedStrokes() > 0 && !flattenedNoticeShown) {
+						flattenedNoticeShown = true;
+						JOptionPane.showMessageDialog(ControlPanel.this, drawingPanel.getFlattenedStrokes()
+								+ " of the oldest strokes have been flattened to save memory, and keep the number of sectors they were drawn with.",
+								"Digital Doilies", JOptionPane.INFORMATION_MESSAGE);
+					}
 				}
 			}
 
@@ -112,6 +133,19 @@ public class ControlPanel extends JPanel {
 
 		});
 
+		// Create the box to choose the brush
+
+		brushBox = new JComboBox<Brush>(Brushes.ALL);
+		brushBox.setSelectedItem(drawingPanel.getBrush());
+		brushBox.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				drawingPanel.setBrush((Brush) brushBox.getSelectedItem());
+			}
+
+		});
+
 		// Create the toggle buttons for reflecting points and for showing sector lines
 
 		reflectButton = new JToggleButton("Reflect");
@@ -147,6 +181,43 @@ public class ControlPanel extends JPanel {
 
 		});
 
+		// Create the controls for rendering quality
+
+		qualityBox = new JComboBox<RenderQuality>(RenderQuality.values());
+		qualityBox.setSelectedItem(drawingPanel.getRenderQuality());
+		qualityBox.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				drawingPanel.setRenderQuality((RenderQuality) qualityBox.getSelectedItem());
+			}
+
+		});
+
+		draftButton = new JToggleButton("Draft while drawing");
+		draftButton.setSelected(drawingPanel.getDraftWhileDragging());
+		draftButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				drawingPanel.setDraftWhileDragging(draftButton.isSelected());
+			}
+
+		});
+
+		// Create the control for animating the drawing
+
+		animationBox = new JComboBox<DoilyAnimator.Mode>(DoilyAnimator.Mode.values());
+		animationBox.setSelectedItem(drawingPanel.getAnimator().getMode());
+		animationBox.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				drawingPanel.getAnimator().setMode((DoilyAnimator.Mode) animationBox.getSelectedItem());
+			}
+
+		});
+
 		// Create the save button to save the current drawing to the gallery
 
 		saveButton = new JButton("Save");
@@ -159,6 +230,20 @@ public class ControlPanel extends JPanel {
 
 		});
 
+		// Create the replay button to play back the drawing session in a new window
+
+		replayButton = new JButton("Replay");
+		replayButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				if (drawingPanel.getEventLog() != null) {
+					new PlaybackWindow(drawingPanel.getEventLog(), drawingPanel.getBrushSize());
+				}
+			}
+
+		});
+
 		// Add all of the components to the ControlPanel
 
 		this.add(undoButton);
@@ -166,6 +251,7 @@ public class ControlPanel extends JPanel {
 
 		this.add(sectorLabel);
 		this.add(sectorSlider);
+		this.add(brushBox);
 		this.add(brushSizeLabel);
 		this.add(brushSizeSlider);
 
@@ -173,7 +259,11 @@ public class ControlPanel extends JPanel {
 		this.add(sectorButton);
 
 		this.add(colourButton);
+		this.add(qualityBox);
+		this.add(draftButton);
+		this.add(animationBox);
 		this.add(saveButton);
+		this.add(replayButton);
 	}
 
 }
\ No newline at end of file
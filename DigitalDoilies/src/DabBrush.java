@@ -0,0 +1,152 @@
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+
+/**
+ * <p>A brush which stamps dab images at even spacing along each stroke</p>
+ *
+ * <p>Dabs come from the shared <b>DabCache</b>, and each sector's copy of a dab is placed by rotating its
+ * centre rather than the graphics, so every dab is drawn as a plain image copy.
+ * Round dabs look the same at any rotation, and the noise of textured dabs has no orientation.</p>
+ *
+ * <p>With speed dynamics the dabs of each segment shrink the further apart its points are,
+ * as the mouse moves faster, in place of pen pressure</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class DabBrush implements Brush {
+
+	private static final double SPACING = 0.25; // The distance between dabs as a fraction of the brush size
+	private static final double SPEED_SCALE = 20; // The distance in pixels between points at which speed dynamics halve the dab size
+	private static final double MINIMUM_SIZE_FACTOR = 0.3; // The smallest fraction of the brush size speed dynamics shrink dabs to
+
+	private final int id; // The id of this brush
+	private final String name; // The name displayed to the user
+	private final float hardness; // The fraction of each dab's radius which is fully opaque
+	private final float flow; // The opacity of each dab as a fraction of the stroke colour's opacity
+	private final boolean textured; // If the dabs are broken up by noise
+	private final boolean speedDynamics; // If dabs shrink as the mouse moves faster
+
+	/**
+	 * Creates a new dab brush
+	 *
+	 * @param id The id of this brush
+	 * @param name The name displayed to the user
+	 * @param hardness The fraction of each dab's radius which is fully opaque, from 0 to 1
+	 * @param flow The opacity of each dab as a fraction of the stroke colour's opacity, from 0 to 1
+	 * @param textured If the dabs are broken up by noise
+	 * @param speedDynamics If dabs shrink as the mouse moves faster
+	 */
+	public DabBrush(int id, String name, float hardness, float flow, boolean textured, boolean speedDynamics) {
+		this.id = id;
+		this.name = name;
+		this.hardness = hardness;
+		this.flow = flow;
+		this.textured = textured;
+		this.speedDynamics = speedDynamics;
+	}
+
+	@Override
+	public int getId() {
+		return id;
+	}
+
+	@Override
+	public void draw(Graphics2D g2, Stroke stroke, int firstPoint, int centreX, int centreY, int numberOfSectors) {
+
+		double[] cos = new double[numberOfSectors]; // Cosine of the rotation of each sector
+		double[] sin = new double[numberOfSectors]; // Sine of the rotation of each sector
+		double spacing = Math.max(1, stroke.getBrushSize() * SPACING);
+		double travelled; // Distance along the stroke to the start of the current segment
+		double length;
+		double along;
+		Color colour = stroke.getColour();
+		Color dabColour = new Color(colour.getRed(), colour.getGreen(), colour.getBlue(), Math.round(colour.getAlpha() * flow));
+		BufferedImage dab;
+		Stroke.PointReader b = stroke.readPoints(Math.max(0, firstPoint - 1));
+		int ax;
+		int ay;
+		int reflectionAX;
+		int reflectionAY;
+
+		for (int i = 0; i < numberOfSectors; i++) {
+			cos[i] = Math.cos(Math.PI*2*i/numberOfSectors);
+			sin[i] = Math.sin(Math.PI*2*i/numberOfSectors);
+		}
+
+		if (!b.next()) return;
+
+		// Dabs carry on exactly where an earlier part of the stroke left off, so start from the distance already drawn
+		travelled = stroke.getLength(b.getIndex());
+
+		// The first point of the stroke always has a dab
+		if (firstPoint == 0) {
+			dab = DabCache.getShared().getDab(stroke.getBrushSize(), dabColour, hardness, textured);
+			stamp(g2, dab, b.x, b.y, cos, sin, centreX, centreY);
+			if (stroke.getReflected()) stamp(g2, dab, b.reflectionX, b.reflectionY, cos, sin, centreX, centreY);
+		}
+
+		// Each segment runs from point a, the point last read, to point b, the point being read
+		ax = b.x;
+		ay = b.y;
+		reflectionAX = b.reflectionX;
+		reflectionAY = b.reflectionY;
+
+		while (b.next()) {
+
+			length = Math.sqrt((double) (b.x - ax) * (b.x - ax) + (double) (b.y - ay) * (b.y - ay));
+
+			dab = DabCache.getShared().getDab(dabSize(stroke.getBrushSize(), length), dabColour, hardness, textured);
+
+			// Place a dab at every multiple of the spacing along the stroke which falls within this segment
+			for (along = (Math.floor(travelled / spacing) + 1) * spacing - travelled; along <= length; along += spacing) {
+
+				stamp(g2, dab, ax + (b.x - ax) * along / length, ay + (b.y - ay) * along / length, cos, sin, centreX, centreY);
+
+				if (stroke.getReflected()) {
+					stamp(g2, dab, reflectionAX + (b.reflectionX - reflectionAX) * along / length, reflectionAY + (b.reflectionY - reflectionAY) * along / length, cos, sin, centreX, centreY);
+				}
+
+			}
+
+			travelled += length;
+
+			ax = b.x;
+			ay = b.y;
+			reflectionAX = b.reflectionX;
+			reflectionAY = b.reflectionY;
+		}
+
+	}
+
+	// Gets the size of the dabs for a segment of the given length
+	private int dabSize(int brushSize, double length) {
+
+		if (!speedDynamics) return brushSize;
+
+		return Math.max(1, (int) Math.round(brushSize * Math.max(MINIMUM_SIZE_FACTOR, 1 / (1 + length / SPEED_SCALE))));
+	}
+
+	// Draws a dab centred on a stroke point in every sector
+	private static void stamp(Graphics2D g2, BufferedImage dab, double x, double y, double[] cos, double[] sin, int centreX, int centreY) {
+
+		// Stroke points are stored relative to the centre with both axes inverted
+		double dx = -x;
+		double dy = -y;
+
+		for (int i = 0; i < cos.length; i++) {
+			g2.drawImage(dab,
+					(int) Math.round(centreX + cos[i] * dx - sin[i] * dy - dab.getWidth() / 2.0),
+					(int) Math.round(centreY + sin[i] * dx + cos[i] * dy - dab.getHeight() / 2.0),
+					null);
+		}
+
+	}
+
+	@Override
+	public String toString() {
+		return name;
+	}
+
+}
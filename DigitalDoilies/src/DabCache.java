@@ -0,0 +1,162 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * <p>A cache of pre-rasterised dab images used by a <b>DabBrush</b></p>
+ *
+ * <p>Dabs are keyed by their size, colour, hardness and texture, so each is rasterised once and afterwards
+ * drawn as a plain image copy. The least recently used dabs are discarded once <b>MAXIMUM_DABS</b> are held.</p>
+ *
+ * <p>Only to be used on the event dispatch thread</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class DabCache {
+
+	private static final int MAXIMUM_DABS = 256; // The number of dab images held before the least recently used are discarded
+	private static final long TEXTURE_SEED = 0x0D011E5L; // Seed for the texture noise, fixed so textured strokes always look the same
+
+	private static final DabCache SHARED = new DabCache(); // The cache shared by all brushes
+
+	private Map<DabKey, BufferedImage> dabs; // The cached dabs in order of least recent use
+
+	/**
+	 * Gets the cache shared by all brushes
+	 *
+	 * @return The shared dab cache
+	 */
+	public static DabCache getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Creates a new empty dab cache
+	 */
+	@SuppressWarnings("serial")
+	public DabCache() {
+
+		this.dabs = new LinkedHashMap<DabKey, BufferedImage>(MAXIMUM_DABS, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<DabKey, BufferedImage> eldest) {
+				return size() > MAXIMUM_DABS;
+			}
+
+		};
+
+	}
+
+	/**
+	 * Gets a dab image, rasterising it if it is not already cached
+	 *
+	 * @param size The diameter of the dab in pixels
+	 * @param colour The colour of the dab, whose alpha is the opacity of the centre
+	 * @param hardness The fraction of the radius which is fully opaque, from 0 for a soft dab to 1 for a hard edge
+	 * @param textured If the opacity of the dab is broken up by noise
+	 * @return The dab image, which must not be modified
+	 */
+	public BufferedImage getDab(int size, Color colour, float hardness, boolean textured) {
+
+		DabKey key = new DabKey(size, colour.getRGB(), hardness, textured);
+		BufferedImage dab = dabs.get(key);
+
+		if (dab == null) {
+			dab = createDab(size, colour, hardness, textured);
+			dabs.put(key, dab);
+		}
+
+		return dab;
+	}
+
+	/**
+	 * Gets the number of dabs currently cached
+	 *
+	 * @return The number of cached dabs
+	 */
+	public int size() {
+		return dabs.size();
+	}
+
+	// Rasterises a new dab image
+	private static BufferedImage createDab(int size, Color colour, float hardness, boolean textured) {
+
+		int diameter = Math.max(1, size);
+		BufferedImage dab = new BufferedImage(diameter, diameter, BufferedImage.TYPE_INT_ARGB);
+		Random noise = new Random(TEXTURE_SEED + diameter);
+		double radius = diameter / 2.0;
+		double distance;
+		double coverage;
+		int alpha;
+
+		for (int y = 0; y < diameter; y++) {
+			for (int x = 0; x < diameter; x++) {
+
+				// Distance of the pixel centre from the dab centre as a fraction of the radius
+				distance = Math.hypot(x + 0.5 - radius, y + 0.5 - radius) / radius;
+
+				if (distance >= 1) {
+					coverage = 0;
+				} else if (distance <= hardness) {
+					coverage = 1;
+				} else {
+					// Smooth fall-off from the hard core to the edge
+					coverage = (1 - distance) / (1 - hardness);
+					coverage = coverage * coverage * (3 - 2 * coverage);
+				}
+
+				if (textured) {
+					coverage *= noise.nextDouble();
+				}
+
+				alpha = (int) Math.round(coverage * colour.getAlpha());
+				dab.setRGB(x, y, (alpha << 24) | (colour.getRGB() & 0xFFFFFF));
+
+			}
+		}
+
+		return dab;
+	}
+
+	/**
+	 * The properties which identify a dab image
+	 *
+	 * @author Oliver Martin (ojm1g16)
+	 *
+	 */
+	private static class DabKey {
+
+		private final int size;
+		private final int colour;
+		private final float hardness;
+		private final boolean textured;
+
+		private DabKey(int size, int colour, float hardness, boolean textured) {
+			this.size = size;
+			this.colour = colour;
+			this.hardness = hardness;
+			this.textured = textured;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+
+			DabKey other;
+
+			if (!(o instanceof DabKey)) return false;
+
+			other = (DabKey) o;
+			return size == other.size && colour == other.colour && hardness == other.hardness && textured == other.textured;
+		}
+
+		@Override
+		public int hashCode() {
+			return ((size * 31 + colour) * 31 + Float.floatToIntBits(hardness)) * 31 + (textured ? 1 : 0);
+		}
+
+	}
+
+}
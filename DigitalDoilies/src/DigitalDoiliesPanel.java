@@ -1,6 +1,10 @@
 import java.awt.BorderLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 
+import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 /**
  * <p>The main panel which holds the components of the application:</p>
@@ -9,6 +13,7 @@ import javax.swing.JPanel;
  * <li>The drawing panel</li>
  * <li>The control panel</li>
  * <li>The gallery panel</li>
+ * <li>A status line reporting memory use, and input latency when traced</li>
  * </ul>
  * 
  * @author Oliver Martin (ojm1g16)
@@ -20,10 +25,13 @@ public class DigitalDoiliesPanel extends JPanel {
 	private DrawingPanel drawingPanel; // The panel in which the user draws
 	private ControlPanel controlPanel; // The panel containing the control elements for the application
 	private GalleryPanel galleryPanel; // The panel containing the gallery for saved images
+	private JLabel statusLabel; // The label reporting the memory used by the drawing and the animation frame rate
+	private Timer statusTimer; // Timer which periodically updates the status label
 
 	private static final int DEFAULT_SECTORS = 12; // The default number of sectors for the drawing panel
 	private static final int DEFAULT_BRUSH_SIZE = 5; // The default brush size to draw with
 	private static final int DEFAULT_GALLERY_WIDTH = 200; // The default width of the gallery panel in pixels
+	private static final int STATUS_INTERVAL = 1000; // The number of milliseconds between updates of the status label
 
 	/**
 	 * Create a new panel with a specified width for the gallery images to be displayed
@@ -48,6 +56,35 @@ public class DigitalDoiliesPanel extends JPanel {
 		this.add(drawingPanel, BorderLayout.CENTER);
 		this.add(galleryPanel, BorderLayout.EAST);
 
+		// Periodically report memory use so the drawing panel's memory budget can be tuned
+
+		statusLabel = new JLabel(drawingPanel.getMemoryReport());
+		this.add(statusLabel, BorderLayout.SOUTH);
+
+		statusTimer = new Timer(STATUS_INTERVAL, new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				String status = drawingPanel.getMemoryReport();
+				
+				if (drawingPanel.getAnimator().isAnimating()) status += " | " + drawingPanel.getAnimator().getReport();
+				if (drawingPanel.getLatencyTracer().isEnabled()) status += " | " + drawingPanel.getLatencyTracer().getReport();
+				
+				statusLabel.setText(status);
+			}
+
+		});
+		statusTimer.start();
+
+	}
+
+	/**
+	 * Gets the panel in which the user draws
+	 * 
+	 * @return The drawing panel
+	 */
+	public DrawingPanel getDrawingPanel() {
+		return drawingPanel;
 	}
 
 }
\ No newline at end of file
@@ -1,10 +1,32 @@
+import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 /**
- * The main window of the application which holds the main container for its components
+ * <p>The main window of the application which holds the main container for its components</p>
+ * 
+ * <p>The window is shown with an empty placeholder so that it appears as soon as possible, and the components
+ * of the application are created once the placeholder has been painted.</p>
+ * 
+ * <p>Run with the system property <b>digitaldoilies.exitAfterStartup</b> set to true to report the time taken to
+ * first paint the window and to create the components, then exit. This is used to measure startup and to record
+ * the classes loaded at startup into a class data sharing archive (see appcds.sh)</p>
+ * 
+ * <p>Run with the system property <b>digitaldoilies.latencyTrace</b> set to a file name to trace the latency of
+ * mouse input, which is written to that file when the application exits (see <b>LatencyTracer</b>)</p>
  * 
  * @author Oliver Martin (ojm1g16)
  *
@@ -13,33 +35,84 @@ import javax.swing.SwingUtilities;
 public class DigitalDoiliesWindow extends JFrame {
 
 	// Main method creates a new digital doilies window
+	// Run with "host [port]" to share the drawing, or "join <host> [port]" to draw on a shared drawing
 	public static void main(String args[]) {
+		
+		mainTime = System.nanoTime();
+		
 		SwingUtilities.invokeLater( new Runnable() { 
 			public void run() {  
-				new DigitalDoiliesWindow();
+				final DigitalDoiliesWindow window = new DigitalDoiliesWindow();
+				
+				window.invokeWhenReady(new Runnable() {
+					public void run() {
+						try {
+							if (args.length > 0 && args[0].equals("host")) {
+								window.hostCollaboration(args.length > 1 ? Integer.parseInt(args[1]) : CollaborationProtocol.DEFAULT_PORT);
+							} else if (args.length > 1 && args[0].equals("join")) {
+								window.joinCollaboration(args[1], args.length > 2 ? Integer.parseInt(args[2]) : CollaborationProtocol.DEFAULT_PORT);
+							}
+						} catch (IOException | NumberFormatException e) {
+							JOptionPane.showMessageDialog(window, "Could not start collaboration: " + e.getMessage(), "Digital Doilies", JOptionPane.ERROR_MESSAGE);
+						}
+					}
+				});
 			}
 		});
 	}
 
+	private static long mainTime; // The System.nanoTime() when the main method began
+
 	private static final int DEFAULT_WIDTH = 1000; // Default width for the main window pixels
 	private static final int DEFAULT_HEIGHT = 500; // Default height for the main window pixels
 	private static final int MINIMUM_WIDTH = 750; // Minimum width for the main window pixels
 	private static final int MINIMUM_HEIGHT = 300; // Minimum height for the main window pixels
+	private static final int CREATE_DELAY = 250; // The milliseconds to wait for the placeholder to be painted before creating the components anyway
+	private static final int EXIT_DELAY = 1000; // The milliseconds to wait after starting before exiting, when set to exit after startup
+	private static final String EXIT_AFTER_STARTUP = "digitaldoilies.exitAfterStartup"; // The system property to exit after startup
+	private static final String LATENCY_TRACE = "digitaldoilies.latencyTrace"; // The system property naming the file to write input latency to
 
 	/**
 	 * Holds the components of the digital doilies application
 	 */
 	private DigitalDoiliesPanel mainPane;
 
+	private CollaborationServer server; // The server sharing this window's drawing, null if it is not hosting
+	private CollaborationClient client; // The connection sharing this window's drawing, null if it is not shared
+
+	private JPanel placeholder; // Shown in place of the main pane until the components are created
+	private List<Runnable> readyActions; // Actions to run once the components are created
+	private long firstPaintTime; // The System.nanoTime() the window was first painted, 0 if it has not been painted
+
 	/**
-	 * Creates a new digital doilies window
+	 * Creates a new digital doilies window, which creates its components once it has first been painted
 	 */
 	public DigitalDoiliesWindow() {
 
 		super("Digital Doilies");
 
-		mainPane = new DigitalDoiliesPanel();
-		this.add(mainPane);
+		readyActions = new ArrayList<Runnable>();
+
+		// Paint an empty window straight away, then create the components
+		
+		placeholder = new JPanel() {
+			
+			@Override
+			protected void paintComponent(Graphics g) {
+				super.paintComponent(g);
+				if (firstPaintTime == 0) {
+					firstPaintTime = System.nanoTime();
+					SwingUtilities.invokeLater(new Runnable() {
+						public void run() {
+							createComponents();
+						}
+					});
+				}
+			}
+			
+		};
+		placeholder.setBackground(Color.BLACK);
+		this.add(placeholder);
 
 		this.setDefaultCloseOperation(EXIT_ON_CLOSE);
 		this.setSize(DEFAULT_WIDTH, DEFAULT_HEIGHT);
@@ -47,6 +120,141 @@ public class DigitalDoiliesWindow extends JFrame {
 
 		this.setVisible(true);
 
+		// Create the components anyway if the window is not painted soon, for example if it starts minimised
+		
+		Timer createTimer = new Timer(CREATE_DELAY, new ActionListener() {
+			
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				createComponents();
+			}
+			
+		});
+		createTimer.setRepeats(false);
+		createTimer.start();
+
+	}
+
+	// Replaces the placeholder with the components of the application and runs any actions waiting for them
+	private void createComponents() {
+		
+		long start;
+		long createTime;
+		
+		if (mainPane != null) return;
+		
+		start = System.nanoTime();
+		
+		mainPane = new DigitalDoiliesPanel();
+		this.remove(placeholder);
+		this.add(mainPane);
+		this.revalidate();
+		this.repaint();
+		
+		createTime = System.nanoTime() - start;
+		
+		if (System.getProperty(LATENCY_TRACE) != null) traceLatency(new File(System.getProperty(LATENCY_TRACE)));
+		
+		for (Runnable action : readyActions) action.run();
+		readyActions = null;
+		
+		if (Boolean.getBoolean(EXIT_AFTER_STARTUP)) {
+			
+			reportStartup(createTime);
+			
+			Timer exitTimer = new Timer(EXIT_DELAY, new ActionListener() {
+				
+				@Override
+				public void actionPerformed(ActionEvent arg0) {
+					System.exit(0);
+				}
+				
+			});
+			exitTimer.setRepeats(false);
+			exitTimer.start();
+		}
+		
+	}
+
+	// Traces the latency of mouse input on the drawing panel, writing it to a file when the application exits
+	private void traceLatency(final File file) {
+		
+		final LatencyTracer tracer = mainPane.getDrawingPanel().getLatencyTracer();
+		
+		tracer.setEnabled(true);
+		tracer.installRepaintManager();
+		
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			public void run() {
+				try {
+					tracer.dump(file);
+					System.out.println("Input latency written to " + file);
+				} catch (IOException e) {
+					System.err.println("Could not write input latency: " + e.getMessage());
+				}
+			}
+		}));
+		
+	}
+
+	// Prints the time taken from launch to first painting the window, and to creating the components
+	private void reportStartup(long createTime) {
+		
+		long now = System.nanoTime();
+		long launchTime = now - ManagementFactory.getRuntimeMXBean().getUptime() * 1000000; // Looked up after painting so it does not delay startup
+		
+		if (firstPaintTime == 0) {
+			System.out.println(String.format("Startup: not painted before %d ms after launch, components created in %d ms",
+					(now - launchTime) / 1000000, createTime / 1000000));
+		} else {
+			System.out.println(String.format("Startup: first paint %d ms after launch (%d ms after main), components created in %d ms, ready %d ms after launch",
+					(firstPaintTime - launchTime) / 1000000, (firstPaintTime - mainTime) / 1000000, createTime / 1000000, (now - launchTime) / 1000000));
+		}
+		
+	}
+
+	/**
+	 * Runs an action once the components of the window have been created, straight away if they already have
+	 * 
+	 * @param action The action to run on the event dispatch thread
+	 */
+	public void invokeWhenReady(Runnable action) {
+		
+		if (mainPane != null) {
+			action.run();
+		} else {
+			readyActions.add(action);
+		}
+		
+	}
+
+	/**
+	 * Starts a collaboration server on the specified port and shares this window's drawing through it
+	 * 
+	 * @param port The port for other users to join on
+	 * @throws IOException If the server could not be started
+	 */
+	public void hostCollaboration(int port) throws IOException {
+		
+		server = new CollaborationServer(port);
+		server.start();
+		
+		joinCollaboration("localhost", server.getPort());
+		
+	}
+
+	/**
+	 * Shares this window's drawing with the collaboration server at the specified address
+	 * 
+	 * @param host The name of the server host
+	 * @param port The port the server is listening on
+	 * @throws IOException If the server could not be reached
+	 */
+	public void joinCollaboration(String host, int port) throws IOException {
+		
+		client = new CollaborationClient(mainPane.getDrawingPanel(), host, port);
+		this.setTitle("Digital Doilies (collaborating as user " + client.getId() + ")");
+		
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,399 @@
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * <p>Animates the drawing of a <b>DrawingPanel</b> at a steady <b>FRAMES_PER_SECOND</b></p>
+ *
+ * <p>Frames are composed on a dedicated thread which paces itself against fixed frame deadlines.
+ * Each frame is made from a cached copy of the drawing rather than by re-drawing its strokes:
+ * rotating the doily rotates the cached image, cycling colours rotates the hue of its pixels,
+ * and pulsing the sectors draws rotated copies of a cached single sector motif. Fills keep the number of sectors
+ * they were found with, so when pulsing any strokes up to the last fill are held still beneath the motif.
+ * Frames are composed into two preallocated buffers which are swapped once a frame is complete.</p>
+ *
+ * <p>Every frame deadline is counted once, as dropped if the deadline passes before its frame is composed or if
+ * its frame is replaced before being painted. The cached copy is updated on the event dispatch thread whenever
+ * the drawing changes.</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class DoilyAnimator implements Runnable {
+
+	/**
+	 * The ways in which the drawing can be animated
+	 *
+	 * @author Oliver Martin (ojm1g16)
+	 *
+	 */
+	public enum Mode {
+
+		NONE("No animation"),
+		ROTATE("Rotate"),
+		CYCLE_COLOURS("Cycle colours"),
+		PULSE_SECTORS("Pulse sectors");
+
+		private final String name; // The name displayed to the user
+
+		private Mode(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+
+	}
+
+	public static final int FRAMES_PER_SECOND = 60; // The rate frames are composed at
+
+	private static final long FRAME_PERIOD = 1000000000L / FRAMES_PER_SECOND; // The nanoseconds between each frame deadline
+	private static final double ROTATION_PERIOD = 30; // The seconds taken for one full rotation of the doily
+	private static final double COLOUR_PERIOD = 10; // The seconds taken to cycle through every hue
+	private static final double PULSE_PERIOD = 4; // The seconds taken for one pulse of the sectors
+	private static final int PULSE_AMPLITUDE = 4; // The most sectors added or removed while pulsing
+	private static final Color BACKGROUND_COLOUR = Color.BLACK; // The colour behind the animated drawing
+
+	private final DrawingPanel panel; // The panel being animated
+	private final Object frameLock; // Guards swapping the frame buffers and painting the front buffer
+	private final Object sourceLock; // Guards the cached copies of the drawing
+	private final Runnable capture; // Updates the cached copies of the drawing on the event dispatch thread
+
+	private volatile Mode mode; // The current animation
+	private volatile boolean sourceChanged; // True if the drawing has changed since it was last cached
+	private volatile boolean capturePending; // True if a capture has been requested but not yet run
+	private Thread thread; // The thread composing frames, null if not animating
+
+	private BufferedImage source; // Cached copy of the drawing
+	private BufferedImage motif; // Cached single sector motif, only used when pulsing sectors
+	private BufferedImage underlay; // Cached strokes up to the last fill, drawn beneath the motif when pulsing sectors
+	private boolean underlaid; // True if the underlay holds any strokes
+	private int baseSectors; // The number of sectors in the drawing when it was cached
+	private BufferedImage front; // The most recently completed frame, painted by the panel
+	private BufferedImage back; // The frame being composed
+	private boolean frontPainted; // True if the front frame has been painted
+
+	private long framesComposed; // The number of frames composed since animating began, guarded by this
+	private long framesDue; // The number of frame deadlines since animating began, guarded by this
+	private long framesDropped; // The number of frame deadlines whose frame was not painted, guarded by this
+	private long reportTime; // The System.nanoTime() of the last report
+	private long reportFrames; // The number of frames composed at the last report
+
+	/**
+	 * Creates a new animator for the specified panel, which is not animating
+	 *
+	 * @param panel The panel to animate
+	 */
+	public DoilyAnimator(DrawingPanel panel) {
+
+		this.panel = panel;
+		this.frameLock = new Object();
+		this.sourceLock = new Object();
+		this.mode = Mode.NONE;
+
+		this.capture = new Runnable() {
+			public void run() {
+				capturePending = false;
+				if (isAnimating()) capture();
+			}
+		};
+
+	}
+
+	/**
+	 * Starts or stops animating the panel in the specified way. Must be called on the event dispatch thread.
+	 *
+	 * @param mode The animation to show, NONE to show the drawing as normal
+	 */
+	public synchronized void setMode(Mode mode) {
+
+		this.mode = mode;
+
+		if (mode == Mode.NONE) {
+
+			if (thread != null) {
+				thread.interrupt();
+				thread = null;
+			}
+
+		} else {
+
+			capture();
+
+			if (thread == null) {
+				framesComposed = 0;
+				framesDue = 0;
+				framesDropped = 0;
+				reportTime = System.nanoTime();
+				reportFrames = 0;
+
+				thread = new Thread(this, "Doily animator");
+				thread.setDaemon(true);
+				thread.start();
+			}
+
+		}
+
+		panel.repaint();
+
+	}
+
+	/**
+	 * Gets the current animation
+	 *
+	 * @return The current animation, NONE if not animating
+	 */
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Returns if the panel is being animated
+	 *
+	 * @return true if animating, else false
+	 */
+	public boolean isAnimating() {
+		return mode != Mode.NONE;
+	}
+
+	/**
+	 * Notes that the drawing has changed so the cached copy should be updated before the next frame
+	 */
+	public void drawingChanged() {
+		sourceChanged = true;
+	}
+
+	/**
+	 * Paints the most recent frame
+	 *
+	 * @param g2 The graphics to paint with
+	 * @return true if a frame was painted, false if there is no frame yet
+	 */
+	public boolean paintFrame(Graphics2D g2) {
+
+		synchronized (frameLock) {
+
+			if (front == null) return false;
+
+			g2.drawImage(front, 0, 0, null);
+			frontPainted = true;
+
+			return true;
+		}
+
+	}
+
+	/**
+	 * Describes the frame rate and dropped frames since the last report
+	 *
+	 * @return A one line summary of animation performance
+	 */
+	public synchronized String getReport() {
+
+		long now = System.nanoTime();
+		long frames = framesComposed;
+		double rate = (frames - reportFrames) * 1e9 / Math.max(1, now - reportTime);
+
+		reportTime = now;
+		reportFrames = frames;
+
+		return String.format("Animation: %.1f fps, %d of %d frames dropped", rate, framesDropped, framesDue);
+	}
+
+	// Copies the drawing, and draws the motif if pulsing, into the cached images
+	private void capture() {
+
+		int width = Math.max(1, panel.getWidth());
+		int height = Math.max(1, panel.getHeight());
+
+		sourceChanged = false;
+
+		synchronized (sourceLock) {
+
+			if (source == null || source.getWidth() != width || source.getHeight() != height) {
+				source = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+				motif = null;
+				underlay = null;
+			}
+
+			panel.copyDrawing(source);
+			baseSectors = panel.getSectors();
+
+			if (mode == Mode.PULSE_SECTORS) {
+				if (motif == null) motif = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+				if (underlay == null) underlay = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+				underlaid = panel.renderMotif(motif, underlay);
+			}
+
+		}
+
+	}
+
+	@Override
+	public void run() {
+
+		long start = System.nanoTime();
+		long deadline = start;
+		long now;
+		long missed;
+		boolean replaced = false;
+		boolean drawn;
+		BufferedImage composed;
+
+		while (!Thread.currentThread().isInterrupted()) {
+
+			// Have the cached drawing updated on the event dispatch thread if it has changed
+			if (sourceChanged && !capturePending) {
+				capturePending = true;
+				SwingUtilities.invokeLater(capture);
+			}
+
+			drawn = compose((deadline - start) / 1e9);
+
+			// Swap the completed frame to the front, unless there was nothing to compose it from
+			if (drawn) {
+				synchronized (frameLock) {
+					replaced = front != null && !frontPainted;
+					composed = back;
+					back = front;
+					front = composed;
+					frontPainted = false;
+				}
+
+				panel.repaint();
+			}
+
+			// Wait for the next deadline, skipping any which have already passed
+			deadline += FRAME_PERIOD;
+			now = System.nanoTime();
+			missed = now > deadline ? (now - deadline) / FRAME_PERIOD + 1 : 0;
+			deadline += missed * FRAME_PERIOD;
+
+			// The frame replaced was composed for an earlier deadline, and skipped deadlines have no frame, so none are counted twice
+			// Deadlines passed while there is nothing to compose from, before the drawing is first cached, are not counted
+			if (drawn) {
+				synchronized (this) {
+					framesComposed++;
+					framesDue += 1 + missed;
+					framesDropped += missed + (replaced ? 1 : 0);
+				}
+			}
+
+			while ((now = System.nanoTime()) < deadline && !Thread.currentThread().isInterrupted()) {
+				LockSupport.parkNanos(deadline - now);
+			}
+
+		}
+
+	}
+
+	// Composes the frame for the specified time into the back buffer, returning false if nothing was drawn to it
+	private boolean compose(double time) {
+
+		Graphics2D g2;
+		int sectors;
+		double angle;
+
+		synchronized (sourceLock) {
+
+			if (source == null) return false;
+
+			// Buffers are only allocated when the size of the drawing changes
+			if (back == null || back.getWidth() != source.getWidth() || back.getHeight() != source.getHeight()) {
+				back = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+			}
+
+			switch (mode) {
+
+			case ROTATE:
+				g2 = back.createGraphics();
+				g2.setColor(BACKGROUND_COLOUR);
+				g2.fillRect(0, 0, back.getWidth(), back.getHeight());
+				g2.rotate(Math.PI * 2 * time / ROTATION_PERIOD, source.getWidth() / 2, source.getHeight() / 2);
+				g2.drawImage(source, 0, 0, null);
+				g2.dispose();
+				break;
+
+			case CYCLE_COLOURS:
+				rotateHue(source, back, Math.PI * 2 * time / COLOUR_PERIOD);
+				break;
+
+			case PULSE_SECTORS:
+				if (motif == null) return false;
+				sectors = Math.max(1, baseSectors + (int) Math.round(PULSE_AMPLITUDE * Math.sin(Math.PI * 2 * time / PULSE_PERIOD)));
+				angle = Math.PI * 2 / sectors;
+				g2 = back.createGraphics();
+				g2.setComposite(AlphaComposite.Src);
+				g2.setColor(BACKGROUND_COLOUR);
+				g2.fillRect(0, 0, back.getWidth(), back.getHeight());
+				g2.setComposite(AlphaComposite.SrcOver);
+				if (underlaid) g2.drawImage(underlay, 0, 0, null);
+				for (int i = 0; i < sectors; i++) {
+					g2.drawImage(motif, 0, 0, null);
+					g2.rotate(angle, source.getWidth() / 2, source.getHeight() / 2);
+				}
+				g2.dispose();
+				break;
+
+			default:
+				return false;
+
+			}
+
+		}
+
+		return true;
+	}
+
+	// Rotates the hue of every pixel of an image about the grey axis, keeping greys such as the background and sector lines
+	private static void rotateHue(BufferedImage from, BufferedImage to, double angle) {
+
+		int[] in = ((DataBufferInt) from.getRaster().getDataBuffer()).getData();
+		int[] out = ((DataBufferInt) to.getRaster().getDataBuffer()).getData();
+		double cos = Math.cos(angle);
+		double sin = Math.sin(angle);
+		double third = 1.0 / 3;
+		double root = Math.sqrt(third);
+		int m00 = (int) Math.round(1024 * (cos + (1 - cos) * third));
+		int m01 = (int) Math.round(1024 * (third * (1 - cos) - root * sin));
+		int m02 = (int) Math.round(1024 * (third * (1 - cos) + root * sin));
+		int pixel;
+		int r;
+		int g;
+		int b;
+
+		// The rotation matrix is the same for every channel in turn, so m00, m01 and m02 are reused cyclically
+		for (int i = 0; i < in.length; i++) {
+
+			pixel = in[i];
+
+			if ((pixel & 0xFFFFFF) == 0) {
+				out[i] = pixel;
+				continue;
+			}
+
+			r = (pixel >> 16) & 0xFF;
+			g = (pixel >> 8) & 0xFF;
+			b = pixel & 0xFF;
+
+			out[i] = (clamp((m00 * r + m01 * g + m02 * b) >> 10) << 16)
+					| (clamp((m02 * r + m00 * g + m01 * b) >> 10) << 8)
+					| clamp((m01 * r + m02 * g + m00 * b) >> 10);
+
+		}
+
+	}
+
+	// Clamps a channel value to between 0 and 255
+	private static int clamp(int value) {
+		return value < 0 ? 0 : (value > 255 ? 255 : value);
+	}
+
+}
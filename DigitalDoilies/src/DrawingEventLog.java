@@ -0,0 +1,520 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * <p>An append-only log of the drawing commands made on a <b>DrawingPanel</b>, with the time each was made</p>
+ *
+ * <p>Events are held in a fixed size ring buffer of primitive arrays, allocated when the log is created.
+ * Once the buffer is full the oldest events are overwritten.</p>
+ *
+ * <p>The log is added to a panel as a <b>DrawingListener</b>.
+ * Every <b>KEYFRAME_INTERVAL</b> events a keyframe of the drawing is kept, so a session can be
+ * rebuilt from the nearest keyframe rather than replayed from the start. Playback can begin
+ * no earlier than the oldest keyframe whose events are all still held in the buffer.</p>
+ *
+ * <p>Keyframes refer to the panel's own strokes rather than copying them. The finished strokes are linked
+ * from newest to oldest, and every keyframe shares the links of the strokes before it, so finishing a stroke
+ * or taking a keyframe allocates one small object whatever the size of the drawing. Undone and cleared strokes
+ * are released once the keyframes taken before they were removed have been overwritten.</p>
+ *
+ * <p>When the panel flattens its oldest strokes to save memory the log releases them too. A keyframe holding
+ * the flattened base layer replaces every earlier keyframe, so playback then begins from the flatten.</p>
+ *
+ * <p>Strokes drawn by collaborating users are only notified once finished, so each is recorded as a
+ * <b>REMOTE_STROKE_BEGIN</b>, its points and a <b>REMOTE_STROKE_END</b> all at once.</p>
+ *
+ * <p>Fills are recorded as strokes begun by <b>FILL_BEGIN</b> or <b>REMOTE_FILL_BEGIN</b>, with two points for
+ * each span of the filled region.</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class DrawingEventLog implements DrawingListener {
+
+	public static final byte STROKE_BEGIN = 0; // Arguments: brush size, colour ARGB, reflected (1 or 0), brush id
+	public static final byte STROKE_POINT = 1; // Arguments: x, y, reflection x, reflection y
+	public static final byte STROKE_END = 2; // No arguments
+	public static final byte SECTORS = 3; // Arguments: number of sectors
+	public static final byte SHOW_SECTORS = 4; // Arguments: 1 if sectors are shown, else 0
+	public static final byte COLOUR = 5; // Arguments: colour ARGB
+	public static final byte UNDO = 6; // Arguments: the number of strokes finished after the stroke undone
+	public static final byte CLEAR = 7; // No arguments, the stroke being drawn is kept
+	public static final byte REMOTE_STROKE_BEGIN = 8; // Arguments: as STROKE_BEGIN, for a stroke finished by a collaborating user
+	public static final byte REMOTE_STROKE_POINT = 9; // Arguments: as STROKE_POINT
+	public static final byte REMOTE_STROKE_END = 10; // Arguments: the number of newer strokes the stroke was placed beneath
+	public static final byte FILL_BEGIN = 11; // Arguments: the number of sectors the region was found with, colour ARGB
+	public static final byte REMOTE_FILL_BEGIN = 12; // Arguments: as FILL_BEGIN, for a fill finished by a collaborating user
+
+	private static final int ARGUMENTS_PER_EVENT = 4; // The number of int arguments stored for every event
+	private static final int KEYFRAME_INTERVAL = 256; // The number of events between each keyframe
+
+	private static final int DEFAULT_CAPACITY = 1 << 18; // The default number of events held by the log
+
+	private final int capacity; // The number of events the ring buffer can hold
+	private final long[] times; // The time of each event in milliseconds since the log was started
+	private final byte[] types; // The type of each event
+	private final int[] arguments; // The arguments of each event, ARGUMENTS_PER_EVENT per event
+
+	private long nextSequence; // The sequence number the next recorded event will be given
+	private final long startTime; // The System.nanoTime() at which the log was started
+
+	private BufferedImage baseLayer; // The flattened strokes after all recorded events, null if there are none
+	private StrokeNode strokes; // The newest finished stroke after all recorded events, null if there are none
+	private Stroke currentStroke; // The stroke being drawn after all recorded events, null if there is none
+	private int currentPoints; // The number of points recorded for the stroke being drawn
+	private Stroke remoteStroke; // The stroke of a collaborating user being recorded, null if there is none
+	private int remotePoints; // The number of points recorded for the stroke of a collaborating user
+	private int numberOfSectors; // The number of sectors after all recorded events
+	private boolean showSectors; // True if the sector lines are shown after all recorded events
+	private Color brushColour; // The brush colour after all recorded events
+	private List<Keyframe> keyframes; // The retained keyframes, oldest first
+
+	/**
+	 * Creates a new event log with the default capacity
+	 *
+	 * @param initialState The state of the drawing when recording begins
+	 */
+	public DrawingEventLog(DrawingState initialState) {
+		this(initialState, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new event log holding at most the specified number of events
+	 *
+	 * @param initialState The state of the drawing when recording begins
+	 * @param capacity The number of events held before the oldest are overwritten
+	 */
+	public DrawingEventLog(DrawingState initialState, int capacity) {
+
+		if (capacity < KEYFRAME_INTERVAL * 2) {
+			throw new IllegalArgumentException("Event log capacity must be at least " + (KEYFRAME_INTERVAL * 2));
+		}
+
+		this.capacity = capacity;
+		this.times = new long[capacity];
+		this.types = new byte[capacity];
+		this.arguments = new int[capacity * ARGUMENTS_PER_EVENT];
+
+		this.nextSequence = 0;
+		this.startTime = System.nanoTime();
+
+		this.baseLayer = initialState.baseLayer;
+
+		for (Stroke s : initialState.strokes) {
+			this.strokes = new StrokeNode(s, strokes);
+		}
+
+		this.currentStroke = initialState.currentStroke;
+		this.currentPoints = currentStroke != null ? currentStroke.getPointCount() : 0;
+		this.numberOfSectors = initialState.numberOfSectors;
+		this.showSectors = initialState.showSectors;
+		this.brushColour = initialState.brushColour;
+
+		this.keyframes = new ArrayList<Keyframe>();
+		this.keyframes.add(new Keyframe(0, 0, this));
+
+	}
+
+	// Appends an event to the ring buffer, after the running state has been updated, and keeps keyframes
+	private void record(byte type, int a, int b, int c, int d) {
+
+		int index = (int) (nextSequence % capacity);
+		int argumentIndex = index * ARGUMENTS_PER_EVENT;
+		long time = (System.nanoTime() - startTime) / 1000000;
+
+		times[index] = time;
+		types[index] = type;
+		arguments[argumentIndex] = a;
+		arguments[argumentIndex + 1] = b;
+		arguments[argumentIndex + 2] = c;
+		arguments[argumentIndex + 3] = d;
+
+		nextSequence++;
+
+		// Keep a keyframe every KEYFRAME_INTERVAL events, dropping any whose events have been overwritten
+		if (nextSequence % KEYFRAME_INTERVAL == 0) {
+			keyframes.add(new Keyframe(nextSequence, time, this));
+		}
+
+		while (keyframes.size() > 1 && keyframes.get(0).sequence < getOldestSequence()) {
+			keyframes.remove(0);
+		}
+
+	}
+
+	@Override
+	public void strokeBegun(Stroke stroke) {
+		currentStroke = stroke;
+		currentPoints = 0;
+		recordBegin(stroke, STROKE_BEGIN, FILL_BEGIN);
+	}
+
+	// Records the beginning of a stroke, or of a fill with the number of sectors it was found with
+	private void recordBegin(Stroke stroke, byte strokeType, byte fillType) {
+
+		if (stroke instanceof FillStroke) {
+			record(fillType, ((FillStroke) stroke).getSectors(), stroke.getColour().getRGB(), 0, 0);
+		} else {
+			record(strokeType, stroke.getBrushSize(), stroke.getColour().getRGB(), stroke.getReflected() ? 1 : 0, stroke.getBrush().getId());
+		}
+	}
+
+	@Override
+	public void strokePointAdded(Stroke stroke, StrokePoint point) {
+		currentPoints++;
+		record(STROKE_POINT, point.x, point.y, point.reflection.x, point.reflection.y);
+	}
+
+	@Override
+	public void strokeFinished(Stroke stroke, int above) {
+
+		Stroke.PointReader reader;
+		Stroke[] newer;
+
+		if (stroke == currentStroke) {
+			strokes = new StrokeNode(stroke, strokes);
+			currentStroke = null;
+			record(STROKE_END, 0, 0, 0, 0);
+			return;
+		}
+
+		// Any other stroke was drawn by a collaborating user, so its beginning and points are recorded now
+		remoteStroke = stroke;
+		remotePoints = 0;
+		recordBegin(stroke, REMOTE_STROKE_BEGIN, REMOTE_FILL_BEGIN);
+
+		reader = stroke.readPoints(0);
+
+		while (reader.next()) {
+			remotePoints++;
+			record(REMOTE_STROKE_POINT, reader.x, reader.y, reader.reflectionX, reader.reflectionY);
+		}
+
+		newer = unlink(above);
+		strokes = new StrokeNode(stroke, strokes);
+		relink(newer);
+		remoteStroke = null;
+		record(REMOTE_STROKE_END, newer.length, 0, 0, 0);
+
+	}
+
+	@Override
+	public void sectorsChanged(int numberOfSectors) {
+		this.numberOfSectors = numberOfSectors;
+		record(SECTORS, numberOfSectors, 0, 0, 0);
+	}
+
+	@Override
+	public void sectorsShown(boolean showSectors) {
+		this.showSectors = showSectors;
+		record(SHOW_SECTORS, showSectors ? 1 : 0, 0, 0, 0);
+	}
+
+	@Override
+	public void brushColourChanged(Color colour) {
+		brushColour = colour;
+		record(COLOUR, colour.getRGB(), 0, 0, 0);
+	}
+
+	@Override
+	public void strokeUndone(Stroke stroke) {
+
+		StrokeNode node = strokes;
+		Stroke[] newer;
+		int depth = 0;
+
+		while (node != null && node.stroke != stroke) {
+			node = node.previous;
+			depth++;
+		}
+
+		if (node == null) return;
+
+		newer = unlink(depth);
+		strokes = strokes.previous;
+		relink(newer);
+		record(UNDO, depth, 0, 0, 0);
+
+	}
+
+	// Takes up to the specified number of the newest strokes off the finished strokes, newest first
+	private Stroke[] unlink(int count) {
+
+		List<Stroke> newer = new ArrayList<Stroke>();
+
+		while (strokes != null && newer.size() < count) {
+			newer.add(strokes.stroke);
+			strokes = strokes.previous;
+		}
+
+		return newer.toArray(new Stroke[newer.size()]);
+	}
+
+	// Links strokes taken off by unlink back on top, with new nodes as the old ones are shared with keyframes
+	private void relink(Stroke[] newer) {
+		for (int i = newer.length - 1; i >= 0; i--) {
+			strokes = new StrokeNode(newer[i], strokes);
+		}
+	}
+
+	@Override
+	public void drawingCleared() {
+		baseLayer = null;
+		strokes = null;
+		remoteStroke = null;
+		record(CLEAR, 0, 0, 0, 0);
+	}
+
+	@Override
+	public void strokesFlattened(List<Stroke> flattened, BufferedImage baseLayer) {
+
+		Set<Stroke> released = Collections.newSetFromMap(new IdentityHashMap<Stroke, Boolean>());
+		List<Stroke> kept = new ArrayList<Stroke>();
+
+		released.addAll(flattened);
+
+		for (StrokeNode node = strokes; node != null; node = node.previous) {
+			if (!released.contains(node.stroke)) kept.add(node.stroke);
+		}
+
+		strokes = null;
+
+		for (int i = kept.size() - 1; i >= 0; i--) {
+			strokes = new StrokeNode(kept.get(i), strokes);
+		}
+
+		this.baseLayer = baseLayer;
+
+		// Earlier keyframes refer to the flattened strokes, so are dropped to release them
+		keyframes.clear();
+		keyframes.add(new Keyframe(nextSequence, (System.nanoTime() - startTime) / 1000000, this));
+
+	}
+
+	/**
+	 * Gets the sequence number of the oldest event still held in the log
+	 *
+	 * @return The sequence number of the oldest held event
+	 */
+	public long getOldestSequence() {
+		return Math.max(0, nextSequence - capacity);
+	}
+
+	/**
+	 * Gets the sequence number that the next recorded event will be given
+	 *
+	 * @return One more than the sequence number of the newest event
+	 */
+	public long getNextSequence() {
+		return nextSequence;
+	}
+
+	/**
+	 * Gets the earliest time in milliseconds that the session can be played back from
+	 *
+	 * @return The time of the oldest retained keyframe
+	 */
+	public long getStartTime() {
+		return keyframes.get(0).time;
+	}
+
+	/**
+	 * Gets the time in milliseconds of the newest event, or the start time if there are no events
+	 *
+	 * @return The time of the newest event
+	 */
+	public long getEndTime() {
+		return nextSequence > getStartSequence() ? getTime(nextSequence - 1) : getStartTime();
+	}
+
+	/**
+	 * Gets the sequence number of the first event that can be played back
+	 *
+	 * @return The sequence number of the oldest retained keyframe
+	 */
+	public long getStartSequence() {
+		return keyframes.get(0).sequence;
+	}
+
+	/**
+	 * Gets the time of an event in milliseconds since recording began
+	 *
+	 * @param sequence The sequence number of a held event
+	 * @return The time of the event
+	 */
+	public long getTime(long sequence) {
+		return times[(int) (sequence % capacity)];
+	}
+
+	/**
+	 * Gets the type of an event
+	 *
+	 * @param sequence The sequence number of a held event
+	 * @return The type of the event, one of the event constants in this class
+	 */
+	public byte getType(long sequence) {
+		return types[(int) (sequence % capacity)];
+	}
+
+	/**
+	 * Gets one of the arguments of an event
+	 *
+	 * @param sequence The sequence number of a held event
+	 * @param argument The index of the argument, from 0 to 3
+	 * @return The value of the argument
+	 */
+	public int getArgument(long sequence, int argument) {
+		return arguments[(int) (sequence % capacity) * ARGUMENTS_PER_EVENT + argument];
+	}
+
+	/**
+	 * Finds the first held event made after the specified time
+	 *
+	 * @param time The time in milliseconds since recording began
+	 * @return The sequence number of the first event after the specified time
+	 */
+	public long findSequence(long time) {
+
+		long low = getStartSequence();
+		long high = nextSequence;
+		long middle;
+
+		// Event times never decrease so a binary search can be used
+		while (low < high) {
+			middle = (low + high) >>> 1;
+			if (getTime(middle) <= time) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+
+		return low;
+	}
+
+	/**
+	 * <p>Rebuilds the state of the drawing as it was at the specified time</p>
+	 *
+	 * <p>Starts from the nearest keyframe at or before that time so only a bounded number of events are applied</p>
+	 *
+	 * @param time The time in milliseconds since recording began
+	 * @return The state of the drawing after every event up to and including that time
+	 */
+	public DrawingState rebuild(long time) {
+
+		Keyframe keyframe = keyframes.get(0);
+		DrawingState rebuilt;
+		long end = findSequence(time);
+
+		for (Keyframe k : keyframes) {
+			if (k.sequence > end) break;
+			keyframe = k;
+		}
+
+		rebuilt = keyframe.toState();
+
+		for (long sequence = keyframe.sequence; sequence < end; sequence++) {
+			rebuilt.apply(this, sequence);
+		}
+
+		return rebuilt;
+	}
+
+	/**
+	 * A finished stroke linked to the strokes finished before it, never modified so it can be shared by keyframes
+	 *
+	 * @author Oliver Martin (ojm1g16)
+	 *
+	 */
+	private static class StrokeNode {
+
+		private final Stroke stroke; // The finished stroke
+		private final StrokeNode previous; // The stroke finished before, null if this is the oldest
+
+		private StrokeNode(Stroke stroke, StrokeNode previous) {
+			this.stroke = stroke;
+			this.previous = previous;
+		}
+
+	}
+
+	/**
+	 * The drawing as it was before the event with the given sequence number
+	 *
+	 * @author Oliver Martin (ojm1g16)
+	 *
+	 */
+	private static class Keyframe {
+
+		private final long sequence; // The sequence number of the first event after this keyframe
+		private final long time; // The time this keyframe was taken
+		private final BufferedImage baseLayer; // The flattened strokes, null if there were none
+		private final StrokeNode strokes; // The newest finished stroke, null if there were none
+		private final Stroke currentStroke; // The stroke being drawn, which may since have had more points added
+		private final int currentPoints; // The number of points the stroke being drawn had
+		private final Stroke remoteStroke; // The stroke of a collaborating user being recorded
+		private final int remotePoints; // The number of points recorded for the stroke of a collaborating user
+		private final int numberOfSectors; // The number of sectors
+		private final boolean showSectors; // True if the sector lines were shown
+		private final Color brushColour; // The brush colour
+
+		// Takes a keyframe of the running state of a log
+		private Keyframe(long sequence, long time, DrawingEventLog log) {
+			this.sequence = sequence;
+			this.time = time;
+			this.baseLayer = log.baseLayer;
+			this.strokes = log.strokes;
+			this.currentStroke = log.currentStroke;
+			this.currentPoints = log.currentPoints;
+			this.remoteStroke = log.remoteStroke;
+			this.remotePoints = log.remotePoints;
+			this.numberOfSectors = log.numberOfSectors;
+			this.showSectors = log.showSectors;
+			this.brushColour = log.brushColour;
+		}
+
+		// Creates a state holding the drawing at this keyframe, strokes in progress are copied up to the points they had
+		private DrawingState toState() {
+
+			DrawingState state = new DrawingState(numberOfSectors, showSectors, brushColour);
+
+			state.baseLayer = baseLayer;
+
+			for (StrokeNode node = strokes; node != null; node = node.previous) {
+				state.strokes.add(node.stroke);
+			}
+
+			Collections.reverse(state.strokes);
+
+			state.currentStroke = copyPoints(currentStroke, currentPoints);
+			state.remoteStroke = copyPoints(remoteStroke, remotePoints);
+
+			return state;
+		}
+
+		// Copies a stroke with only its first points, null if there is no stroke
+		private static Stroke copyPoints(Stroke stroke, int count) {
+
+			Stroke copy;
+			Stroke.PointReader reader;
+
+			if (stroke == null) return null;
+
+			copy = stroke.copySettings();
+			reader = stroke.readPoints(0);
+
+			for (int i = 0; i < count && reader.next(); i++) {
+				copy.points.add(new StrokePoint(reader.x, reader.y, reader.reflectionX, reader.reflectionY));
+			}
+
+			return copy;
+		}
+
+	}
+
+}
@@ -0,0 +1,84 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.List;
+
+/**
+ * <p>Listener notified of the drawing commands made on a <b>DrawingPanel</b></p>
+ *
+ * <p>Notifications are made on the event dispatch thread after the command has been applied to the panel</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public interface DrawingListener {
+
+	/**
+	 * Called when a new stroke is begun
+	 *
+	 * @param stroke The new stroke, which has no points yet
+	 */
+	void strokeBegun(Stroke stroke);
+
+	/**
+	 * Called when a point is added to the stroke being drawn
+	 *
+	 * @param stroke The stroke being drawn
+	 * @param point The point added
+	 */
+	void strokePointAdded(Stroke stroke, StrokePoint point);
+
+	/**
+	 * <p>Called when a stroke is finished and added to the drawing</p>
+	 *
+	 * <p>This is either the stroke being drawn, or a stroke drawn by a collaborating user, whose beginning
+	 * and points are not notified. A collaborating user's stroke may be placed beneath the newest strokes, so
+	 * strokes are in the same order for every user.</p>
+	 *
+	 * @param stroke The finished stroke
+	 * @param above The number of newer strokes the stroke was placed beneath, 0 if it is the newest
+	 */
+	void strokeFinished(Stroke stroke, int above);
+
+	/**
+	 * Called when the number of sectors is changed
+	 *
+	 * @param numberOfSectors The new number of sectors
+	 */
+	void sectorsChanged(int numberOfSectors);
+
+	/**
+	 * Called when the sector lines are shown or hidden
+	 *
+	 * @param showSectors True if the sector lines are now shown
+	 */
+	void sectorsShown(boolean showSectors);
+
+	/**
+	 * Called when the brush colour is changed
+	 *
+	 * @param colour The new brush colour
+	 */
+	void brushColourChanged(Color colour);
+
+	/**
+	 * Called when a finished stroke is undone
+	 *
+	 * @param stroke The stroke removed from the drawing, which may not be the newest if undone by a collaborating user
+	 */
+	void strokeUndone(Stroke stroke);
+
+	/**
+	 * Called when the drawing is cleared
+	 */
+	void drawingCleared();
+
+	/**
+	 * Called when the oldest strokes are flattened into the base layer to save memory, after which they can no
+	 * longer be undone, so listeners should release them
+	 *
+	 * @param flattened The strokes flattened, oldest first
+	 * @param baseLayer The image now holding every flattened stroke, which is never changed so may be kept
+	 */
+	void strokesFlattened(List<Stroke> flattened, BufferedImage baseLayer);
+
+}
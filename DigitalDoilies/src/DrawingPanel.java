@@ -1,17 +1,24 @@
-import java.awt.BasicStroke;
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.geom.Path2D;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 @SuppressWarnings("serial")
 public class DrawingPanel extends JPanel {
@@ -20,20 +27,62 @@ public class DrawingPanel extends JPanel {
 	
 	private Point mousePosition; // The current position of the mouse on the drawing panel, null if the mouse is elsewhere
 	private Stroke currentStroke; // The current stroke being drawn if there is one, null if not
+	private int drawnPoints; // The number of points of the current stroke already drawn to the image
 	private Stack<Stroke> strokes; // A stack of all the strokes that make up the drawing
+	private List<Stroke> remoteStrokes; // Strokes being drawn by collaborating users which are not yet finished
 
 	private int numberOfSectors; // The current number of sectors being used to draw
 	private boolean showSectors; // True if the sector lines should be drawn, otherwise false
 
+	private Brush brush; // The current brush being used
 	private int brushSize; // The current size of the brush being used
 	private Color brushColour; // The current colour of the brush being used
 
 	private boolean reflect; // If new drawn points should be reflected within their respective sectors
 
+	private RenderQuality renderQuality; // The rendering preset used to draw the image
+	private boolean compressStrokes; // True if finished strokes are compressed
+	private boolean draftWhileDragging; // True if the stroke being drawn is drawn quickly then re-drawn at full quality when finished
+	private BufferedImage draftBase; // A copy of the image from before the stroke being drawn in draft quality was begun
+	private int draftStrokeCount; // The number of strokes in the stack when draftBase was copied, -1 if there is no draft
+
+	private BufferedImage baseLayer; // Strokes flattened to save memory, drawn centred beneath the remaining strokes, null if there are none
+	private int flattenedStrokes; // The number of strokes which have been flattened into the base layer
+	private long memoryBudget; // The estimated bytes of stroke data allowed before old strokes are flattened, 0 for no limit
+	private int editableStrokes; // The number of most recent strokes kept when old strokes are flattened
+	private long strokeMemory; // The estimated bytes of the strokes in the stack, updated as strokes are added and removed
+	private boolean collaborating; // True while the drawing is shared with collaborating users, when no strokes are flattened
+
+	private int previewSectors; // The number of sectors being previewed, 0 if there is no preview
+	private BufferedImage previewImage; // The preview of the drawing with previewSectors, null if there is no preview
+	private BufferedImage motif; // The strokes after the last fill drawn into a single sector, reused between preview frames, null once the strokes change
+	private double motifScale; // The scale the motif was drawn at
+	private BufferedImage underlay; // The strokes up to the last fill drawn in previewSectors, null if there are no fills or once the strokes change
+	private double underlayScale; // The scale the underlay was drawn at
+	private int underlaySectors; // The number of sectors the underlay was drawn in
+	private double previewScale; // The scale the next preview frame will be drawn at
+	private Timer previewRefineTimer; // Timer which re-draws the preview at full resolution once it stops changing
+
+	private DoilyAnimator animator; // Animates the drawing when an animation is selected
+	private LatencyTracer latencyTracer; // Traces the time taken for mouse events to be painted, when enabled
+	
+	private DrawingEventLog eventLog; // The log that drawing commands are recorded to, null if they are not recorded
+	private List<DrawingListener> listeners; // Listeners notified of drawing commands, including the event log
+	private boolean drawingEnabled; // True if the user may draw on the panel with the mouse
+
 	private static final int MINIMUM_PANEL_SIZE = 200; // The minimum width/height for the drawing panel object
 	private static final Color DEFAULT_BACKGROUND_COLOUR = Color.BLACK; // The background colour to be used for the drawing panel
 	private static final Color DEFAULT_BRUSH_COLOUR = Color.WHITE; // The default colour to be selected for the brush
 	private static final int BRUSH_HOVER_TRANSPARENCY = 150; // The transparency factor for the brush hovering over the drawing panel
+	private static final RenderQuality DEFAULT_RENDER_QUALITY = RenderQuality.BALANCED; // The rendering preset used by default
+	private static final long DEFAULT_MEMORY_BUDGET = 32L * 1024 * 1024; // The default estimated bytes of stroke data before flattening
+	private static final int DEFAULT_EDITABLE_STROKES = 100; // The default number of recent strokes kept when flattening
+	private static final double BYTES_PER_MEGABYTE = 1024 * 1024; // Used when reporting memory use
+	private static final double PREVIEW_SCALE = 0.5; // The scale preview frames are first drawn at
+	private static final double MINIMUM_PREVIEW_SCALE = 0.125; // The lowest scale preview frames are drawn at
+	private static final long FRAME_BUDGET = 16000000; // The nanoseconds a preview frame may take before the scale is lowered
+	private static final int PREVIEW_REFINE_DELAY = 150; // The milliseconds a preview must stay the same before being re-drawn at full resolution
+	private static final int FILL_TOLERANCE = 48; // The largest channel difference from the clicked colour which is filled
 
 	/**
 	 * Creates a new drawing panel with a specified number of sectors to begin with
@@ -48,17 +97,46 @@ public class DrawingPanel extends JPanel {
 		
 		this.brushColour = DEFAULT_BRUSH_COLOUR;
 		this.brushSize = initialBrushSize;
+		this.brush = Brushes.ROUND;
 
 		this.reflect = false;
 		this.mousePosition = null;
+		this.renderQuality = DEFAULT_RENDER_QUALITY;
+		this.draftWhileDragging = true;
+		this.compressStrokes = true;
+		this.draftStrokeCount = -1;
+		this.memoryBudget = DEFAULT_MEMORY_BUDGET;
+		this.editableStrokes = DEFAULT_EDITABLE_STROKES;
+		this.previewScale = PREVIEW_SCALE;
+		this.previewRefineTimer = new Timer(PREVIEW_REFINE_DELAY, new ActionListener() {
+			
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				if (previewSectors > 0) {
+					renderPreview(1, renderQuality);
+					repaint();
+				}
+			}
+			
+		});
+		this.previewRefineTimer.setRepeats(false);
+		this.animator = new DoilyAnimator(this);
+		this.latencyTracer = new LatencyTracer();
 		this.showSectors = true;
+		this.drawingEnabled = true;
 		
 		this.strokes = new Stack<Stroke>();
+		this.remoteStrokes = new ArrayList<Stroke>();
+		this.listeners = new ArrayList<DrawingListener>();
 		
 		this.setMinimumSize(new Dimension(MINIMUM_PANEL_SIZE, MINIMUM_PANEL_SIZE));
 		
 		this.changeSectors(initialSectors);
 		
+		// Begin recording drawing commands from the initial state
+		
+		this.setEventLog(new DrawingEventLog(new DrawingState(numberOfSectors, showSectors, brushColour)));
+		
 		// Add listener for resizing of this drawing panel
 		
 		this.addComponentListener(new ComponentAdapter() {
@@ -80,43 +158,27 @@ public class DrawingPanel extends JPanel {
 	
 	// Draws a stroke object to the image
 	private void drawStroke(Stroke stroke) {
+		drawStroke(stroke, 0);
+	}
+	
+	// Draws the part of a stroke object from the specified point onwards to the image
+	private void drawStroke(Stroke stroke, int firstPoint) {
+		drawStroke(drawing, stroke, firstPoint);
+	}
+	
+	// Draws the part of a stroke object from the specified point onwards to an image, centred on that image
+	private void drawStroke(BufferedImage target, Stroke stroke, int firstPoint) {
 		
-		Graphics2D g2;		
-		StrokePoint lastPoint;
+		Graphics2D g2;
 		
 		if (stroke != null) {
 			
-			g2 = (Graphics2D) drawing.getGraphics();
-			lastPoint = null;
+			g2 = (Graphics2D) target.getGraphics();
+			(stroke == currentStroke && draftStrokeCount >= 0 ? RenderQuality.FAST : renderQuality).apply(g2);
 			
-			for (StrokePoint p : stroke.points) {
-				
-				g2.setColor(stroke.getColour());
-				g2.setStroke(new BasicStroke(stroke.getBrushSize(),BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-
-				for (int i = 0; i < numberOfSectors; i++) {
-					
-					if (lastPoint != null) {
-						// If there is more than one point in the stroke draw a series of lines
-						g2.drawLine(getWidth()/2 - p.x, getHeight()/2 - p.y, getWidth()/2 - lastPoint.x, getHeight()/2 - lastPoint.y);
-						if (stroke.getReflected()) {
-							g2.drawLine(getWidth()/2 - p.reflection.x, getHeight()/2 - p.reflection.y, getWidth()/2 - lastPoint.reflection.x, getHeight()/2 - lastPoint.reflection.y);
-						}
-						
-					} else if (stroke.points.size() == 1) {
-						// If there is only one point in the stroke draw a circle
-						g2.fillOval(getWidth()/2 - stroke.points.get(0).x - stroke.getBrushSize()/2, getHeight()/2 - stroke.points.get(0).y - stroke.getBrushSize()/2, stroke.getBrushSize(), stroke.getBrushSize());
-						if (stroke.getReflected()) {
-							g2.fillOval(getWidth()/2 - stroke.points.get(0).reflection.x - stroke.getBrushSize()/2, getHeight()/2 - stroke.points.get(0).reflection.y - stroke.getBrushSize()/2, stroke.getBrushSize(), stroke.getBrushSize());
-						}
-						
-					}
-					
-					g2.rotate(Math.PI*2/numberOfSectors, this.getWidth()/2,this.getHeight()/2);
-				}
-				
-				lastPoint = p;
-			}
+			stroke.getBrush().draw(g2, stroke, firstPoint, target.getWidth()/2, target.getHeight()/2, numberOfSectors);
+			
+			g2.dispose();
 		}
 	}
 	
@@ -125,20 +187,155 @@ public class DrawingPanel extends JPanel {
 		
 		Graphics2D g2 = (Graphics2D) drawing.getGraphics();
 		
+		renderQuality.apply(g2);
+		drawSectors(g2, numberOfSectors);
+		
+	}
+	
+	// Draws the lines of the specified number of sectors with a graphics object
+	private void drawSectors(Graphics2D g2, int sectors) {
+		
 		g2.setColor(DEFAULT_BRUSH_COLOUR);
 		
-		for (int i = 0; i < numberOfSectors; i++) {
+		for (int i = 0; i < sectors; i++) {
 			g2.drawLine(this.getWidth()/2, this.getHeight()/2, this.getWidth()/2, this.getHeight()/6);
-			g2.rotate(Math.PI*2/numberOfSectors, this.getWidth()/2,this.getHeight()/2);
+			g2.rotate(Math.PI*2/sectors, this.getWidth()/2,this.getHeight()/2);
+		}
+		
+	}
+	
+	// Gets a stroke by its index among the finished strokes followed by the strokes of collaborating users, in drawing order
+	private Stroke strokeAt(int index) {
+		return index < strokes.size() ? strokes.get(index) : remoteStrokes.get(index - strokes.size());
+	}
+	
+	// Returns the index of the first stroke after the last fill, as fills cannot be rotated into other sectors with a motif
+	private int motifStart() {
+		
+		for (int i = strokes.size() + remoteStrokes.size() - 1; i >= 0; i--) {
+			if (!strokeAt(i).getBrush().followsSectors()) return i + 1;
+		}
+		
+		return 0;
+	}
+	
+	// Returns if an image drawn at one scale can be shrunk into a frame at another, rather than re-drawn
+	private boolean isReusable(BufferedImage image, double imageScale, double scale) {
+		return image != null && imageScale >= scale
+				&& image.getWidth() == Math.max(1, (int) Math.ceil(getWidth() * imageScale))
+				&& image.getHeight() == Math.max(1, (int) Math.ceil(getHeight() * imageScale));
+	}
+	
+	// Draws the strokes in the range, in drawing order, on a transparent image of the panel at the specified scale
+	// Strokes after the last fill are drawn into one sector as a motif, which is rotated into every sector when shown
+	private void drawStrokes(BufferedImage target, double scale, RenderQuality quality, int from, int to, int sectors) {
+		
+		Graphics2D g2 = target.createGraphics();
+		Stroke s;
+		
+		g2.setComposite(AlphaComposite.Clear);
+		g2.fillRect(0, 0, target.getWidth(), target.getHeight());
+		g2.setComposite(AlphaComposite.SrcOver);
+		
+		quality.apply(g2);
+		g2.scale(scale, scale);
+		
+		for (int i = from; i < to; i++) {
+			s = strokeAt(i);
+			s.getBrush().draw(g2, s, 0, getWidth()/2, getHeight()/2, sectors);
+		}
+		
+		g2.dispose();
+	}
+	
+	// Draws a preview of the drawing with the previewed number of sectors at the specified scale, returning the nanoseconds spent drawing it
+	private long renderPreview(double scale, RenderQuality quality) {
+		
+		int width = Math.max(1, (int) Math.ceil(getWidth() * scale));
+		int height = Math.max(1, (int) Math.ceil(getHeight() * scale));
+		double centreX = (getWidth()/2) * scale;
+		double centreY = (getHeight()/2) * scale;
+		long start = System.nanoTime();
+		int split = motifStart();
+		Graphics2D g2;
+		Graphics2D scaled;
+		
+		// Draw every stroke after the last fill once, into a single sector, unless a motif at this scale or finer can be shrunk instead
+		if (!isReusable(motif, motifScale, scale)) {
+			
+			motif = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+			motifScale = scale;
+			
+			drawStrokes(motif, scale, quality, split, strokes.size() + remoteStrokes.size(), 1);
+		}
+		
+		// Strokes up to the last fill are drawn in every previewed sector beneath it, and each fill in its own sectors
+		if (split == 0) {
+			underlay = null;
+		} else if (underlaySectors != previewSectors || !isReusable(underlay, underlayScale, scale)) {
+			
+			underlay = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+			underlayScale = scale;
+			underlaySectors = previewSectors;
+			
+			drawStrokes(underlay, scale, quality, 0, split, previewSectors);
 		}
 		
+		if (previewImage == null || previewImage.getWidth() != width || previewImage.getHeight() != height) {
+			previewImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		}
+		
+		g2 = previewImage.createGraphics();
+		quality.apply(g2);
+		g2.setColor(DEFAULT_BACKGROUND_COLOUR);
+		g2.fillRect(0, 0, width, height);
+		
+		// Sector lines and flattened strokes are drawn at the size of the panel
+		scaled = (Graphics2D) g2.create();
+		scaled.scale(scale, scale);
+		
+		if (showSectors) {
+			drawSectors(scaled, previewSectors);
+		}
+		
+		if (baseLayer != null) {
+			scaled.drawImage(baseLayer, getWidth()/2 - baseLayer.getWidth()/2, getHeight()/2 - baseLayer.getHeight()/2, null);
+		}
+		
+		scaled.dispose();
+		
+		if (underlay != null) {
+			g2.drawImage(underlay, 0, 0, width, height, null);
+		}
+		
+		// Every sector is a rotated copy of the single sector motif
+		for (int i = 0; i < previewSectors; i++) {
+			g2.drawImage(motif, 0, 0, width, height, null);
+			g2.rotate(Math.PI*2/previewSectors, centreX, centreY);
+		}
+		
+		g2.dispose();
+		
+		return System.nanoTime() - start;
+	}
+	
+	// Discards the motif once the strokes have changed, and re-draws any preview once they stop changing
+	private void strokesChanged() {
+		
+		motif = null;
+		underlay = null;
+		if (previewSectors > 0) previewRefineTimer.restart();
 	}
 	
-	// Updates the drawing with the latest stroke
+	// Updates the drawing with the points of the current stroke not yet drawn
 	private void updateDrawing() {
 		
-		drawStroke(currentStroke);
+		if (currentStroke != null) {
+			drawStroke(currentStroke, drawnPoints);
+			drawnPoints = currentStroke.getPointCount();
+		}
 
+		animator.drawingChanged();
 		repaint();
 	}
 	
@@ -158,15 +355,110 @@ public class DrawingPanel extends JPanel {
 			drawSectors();
 		}
 
+		// Draw any flattened strokes beneath the remaining strokes
+		if (baseLayer != null) {
+			g2.drawImage(baseLayer, drawing.getWidth()/2 - baseLayer.getWidth()/2, drawing.getHeight()/2 - baseLayer.getHeight()/2, null);
+		}
+
 		// Draw all the strokes to the drawing
 		for (Stroke s : strokes) {
 			drawStroke(s);
 		}
 		
+		// Draw the unfinished strokes of any collaborating users
+		for (Stroke s : remoteStrokes) {
+			drawStroke(s);
+		}
+		
+		// The whole of any current stroke needs drawing on the new image
+		drawnPoints = 0;
+		
+		// Keep a copy of the image without any stroke being drafted so it can be refined when finished
+		if (currentStroke != null && isDrafting()) {
+			saveDraftBase();
+		} else {
+			draftStrokeCount = -1;
+		}
+		
 		// Updates the drawing with any strokes currently being drawn and calls repaint()
 		updateDrawing();
 		
 	}
+	
+	// Flattens the oldest strokes into the base layer if the stroke data is over the memory budget, and tells listeners to release them
+	private void enforceMemoryBudget() {
+		
+		int flatten = strokes.size() - editableStrokes;
+		List<Stroke> flattened;
+		BufferedImage flattenedLayer;
+		Graphics2D g2;
+		
+		if (memoryBudget <= 0 || collaborating || flatten <= 0 || strokeMemory <= memoryBudget) return;
+		
+		// Listeners may keep the old base layer so a new one is made, grown if the panel has grown since the last
+		flattenedLayer = new BufferedImage(Math.max(drawing.getWidth(), baseLayer == null ? 1 : baseLayer.getWidth()), Math.max(drawing.getHeight(), baseLayer == null ? 1 : baseLayer.getHeight()), BufferedImage.TYPE_INT_ARGB_PRE);
+		
+		if (baseLayer != null) {
+			g2 = flattenedLayer.createGraphics();
+			g2.drawImage(baseLayer, flattenedLayer.getWidth()/2 - baseLayer.getWidth()/2, flattenedLayer.getHeight()/2 - baseLayer.getHeight()/2, null);
+			g2.dispose();
+		}
+		
+		// The flattened strokes are already on the image so only the base layer needs drawing
+		for (int i = 0; i < flatten; i++) {
+			drawStroke(flattenedLayer, strokes.get(i), 0);
+			strokeMemory -= strokes.get(i).getEstimatedSize();
+		}
+		
+		baseLayer = flattenedLayer;
+		flattened = new ArrayList<Stroke>(strokes.subList(0, flatten));
+		strokes.subList(0, flatten).clear();
+		flattenedStrokes += flatten;
+		strokesChanged();
+		for (DrawingListener l : listeners) l.strokesFlattened(flattened, baseLayer);
+		
+		if (draftStrokeCount >= 0) draftStrokeCount = Math.max(0, draftStrokeCount - flatten);
+	}
+	
+	// Returns true if strokes being drawn should be drawn in draft quality
+	private boolean isDrafting() {
+		return draftWhileDragging && renderQuality != RenderQuality.FAST;
+	}
+	
+	// Copies the current image so the stroke about to be drafted can later be re-drawn over it
+	private void saveDraftBase() {
+		
+		Graphics2D g2;
+		
+		if (draftBase == null || draftBase.getWidth() != drawing.getWidth() || draftBase.getHeight() != drawing.getHeight()) {
+			draftBase = new BufferedImage(drawing.getWidth(), drawing.getHeight(), BufferedImage.TYPE_INT_RGB);
+		}
+		
+		g2 = draftBase.createGraphics();
+		g2.drawImage(drawing, 0, 0, null);
+		g2.dispose();
+		
+		draftStrokeCount = strokes.size();
+	}
+	
+	// Replaces the draft rendering of every stroke added since the draft began with a full quality rendering
+	private void refineDraft() {
+		
+		Graphics2D g2 = drawing.createGraphics();
+		
+		g2.drawImage(draftBase, 0, 0, null);
+		g2.dispose();
+		
+		for (int i = draftStrokeCount; i < strokes.size(); i++) {
+			drawStroke(strokes.get(i));
+		}
+		
+		for (Stroke s : remoteStrokes) {
+			drawStroke(s);
+		}
+		
+		draftStrokeCount = -1;
+	}
 
 	/**
 	 * <p>Changes the number of sectors being used to draw to the specified value</p>
@@ -177,16 +469,51 @@ public class DrawingPanel extends JPanel {
 	 */
 	public void changeSectors(int numberOfSectors) {
 
+		// Any preview is replaced by the full drawing
+		previewRefineTimer.stop();
+		previewSectors = 0;
+		previewImage = null;
+		motif = null;
+		underlay = null;
+		previewScale = PREVIEW_SCALE;
+
 		this.numberOfSectors = numberOfSectors;
+		for (DrawingListener l : listeners) l.sectorsChanged(numberOfSectors);
 		refreshDrawing();
 	}
 
+	/**
+	 * <p>Displays a quick preview of the drawing with the specified number of sectors, without changing the drawing</p>
+	 * 
+	 * <p>Every stroke is drawn once into a single sector motif at low resolution, which is reused while previewing
+	 * until the strokes change, and each sector is a rotated copy of it. Fills keep the number of sectors they were
+	 * found with, so any strokes up to the last fill are instead drawn in the previewed number of sectors beneath
+	 * the motif, and re-drawn whenever that number changes. The resolution is lowered whenever a frame,
+	 * including any re-drawing of the motif, takes longer than <b>FRAME_BUDGET</b>. The preview is re-drawn at full
+	 * resolution once it has not changed for <b>PREVIEW_REFINE_DELAY</b>, after which the full resolution motif is
+	 * shrunk for later frames rather than re-drawn. Calling <b>changeSectors</b> ends the preview.</p>
+	 * 
+	 * @param numberOfSectors The number of sectors to preview
+	 */
+	public void previewSectors(int numberOfSectors) {
+		
+		previewSectors = numberOfSectors;
+		
+		if (renderPreview(previewScale, RenderQuality.FAST) > FRAME_BUDGET && previewScale > MINIMUM_PREVIEW_SCALE) {
+			previewScale /= 2;
+		}
+		
+		repaint();
+		previewRefineTimer.restart();
+	}
+
 	/**
 	 * Toggles if the sector lines should be displayed and re-draws the image
 	 */
 	public void toggleSectors() {
 
 		showSectors = !showSectors;
+		for (DrawingListener l : listeners) l.sectorsShown(showSectors);
 		refreshDrawing();
 	}
 
@@ -208,6 +535,24 @@ public class DrawingPanel extends JPanel {
 		this.brushSize = brushSize;
 	}
 
+	/**
+	 * Gets the current brush being used
+	 * 
+	 * @return The brush being used
+	 */
+	public Brush getBrush() {
+		return brush;
+	}
+
+	/**
+	 * Sets the brush used for subsequent strokes
+	 * 
+	 * @param brush
+	 */
+	public void setBrush(Brush brush) {
+		this.brush = brush;
+	}
+
 	/**
 	 * Get the current colour of the brush
 	 * 
@@ -224,6 +569,147 @@ public class DrawingPanel extends JPanel {
 	 */
 	public void setBrushColour(Color colour) {
 		this.brushColour = colour;
+		if (colour != null) {
+			for (DrawingListener l : listeners) l.brushColourChanged(colour);
+		}
+	}
+
+	/**
+	 * Gets the rendering preset used to draw the image
+	 * 
+	 * @return The current rendering preset
+	 */
+	public RenderQuality getRenderQuality() {
+		return renderQuality;
+	}
+
+	/**
+	 * Sets the rendering preset used to draw the image and re-draws the image
+	 * 
+	 * @param renderQuality
+	 */
+	public void setRenderQuality(RenderQuality renderQuality) {
+		this.renderQuality = renderQuality;
+		refreshDrawing();
+	}
+
+	/**
+	 * Returns if strokes are drawn in fast quality while being dragged and re-drawn in the current quality once finished
+	 * 
+	 * @return true if drafting while dragging, else false
+	 */
+	public boolean getDraftWhileDragging() {
+		return draftWhileDragging;
+	}
+
+	/**
+	 * Sets if strokes are drawn in fast quality while being dragged and re-drawn in the current quality once finished
+	 * 
+	 * @param draftWhileDragging
+	 */
+	public void setDraftWhileDragging(boolean draftWhileDragging) {
+		this.draftWhileDragging = draftWhileDragging;
+	}
+
+	/**
+	 * Returns if finished strokes are compressed to save memory
+	 * 
+	 * @return true if compressing strokes, else false
+	 */
+	public boolean getCompressStrokes() {
+		return compressStrokes;
+	}
+
+	/**
+	 * <p>Sets if finished strokes are compressed to save memory</p>
+	 * 
+	 * <p>Strokes already compressed stay compressed</p>
+	 * 
+	 * @param compressStrokes
+	 */
+	public void setCompressStrokes(boolean compressStrokes) {
+		this.compressStrokes = compressStrokes;
+	}
+
+	/**
+	 * <p>Sets the estimated bytes of stroke data the drawing may hold before old strokes are flattened</p>
+	 * 
+	 * <p>Flattened strokes are drawn into a raster base layer and their points released.
+	 * They can no longer be undone, and keep the number of sectors they were drawn with.
+	 * Listeners are notified so they can release the strokes too. No strokes are flattened while collaborating.</p>
+	 * 
+	 * @param memoryBudget The budget in bytes, or 0 for no limit
+	 * @param editableStrokes The number of most recent strokes which are never flattened
+	 */
+	public void setMemoryBudget(long memoryBudget, int editableStrokes) {
+		this.memoryBudget = memoryBudget;
+		this.editableStrokes = Math.max(0, editableStrokes);
+		enforceMemoryBudget();
+	}
+
+	/**
+	 * Gets the estimated bytes of stroke data the drawing may hold before old strokes are flattened
+	 * 
+	 * @return The budget in bytes, or 0 for no limit
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * <p>Sets if the drawing is shared with collaborating users</p>
+	 * 
+	 * <p>Strokes are flattened by each user separately, so a stroke one user has flattened could still be undone
+	 * by another and the drawings would differ. Strokes are therefore never flattened while collaborating, and
+	 * the memory budget is enforced again once collaboration ends.</p>
+	 * 
+	 * @param collaborating true while collaborating, else false
+	 */
+	public void setCollaborating(boolean collaborating) {
+		this.collaborating = collaborating;
+		enforceMemoryBudget();
+	}
+
+	/**
+	 * Estimates the heap used by the strokes which can still be undone and re-drawn
+	 * 
+	 * @return The approximate size of the stroke data in bytes
+	 */
+	public long getStrokeMemory() {
+		return strokeMemory;
+	}
+
+	/**
+	 * Gets the number of strokes which have been flattened into the base layer since the drawing was last cleared
+	 * 
+	 * @return The number of flattened strokes
+	 */
+	public int getFlattenedStrokes() {
+		return flattenedStrokes;
+	}
+
+	/**
+	 * Gets the heap used by the raster layer holding flattened strokes
+	 * 
+	 * @return The size of the base layer in bytes, 0 if no strokes have been flattened
+	 */
+	public long getBaseLayerMemory() {
+		return baseLayer == null ? 0 : (long) baseLayer.getWidth() * baseLayer.getHeight() * 4;
+	}
+
+	/**
+	 * Describes the memory used by the drawing and the whole heap, to help tune the memory budget
+	 * 
+	 * @return A one line summary of memory use
+	 */
+	public String getMemoryReport() {
+		
+		Runtime runtime = Runtime.getRuntime();
+		
+		return String.format("Strokes: %d editable (%.1f MB of %.1f MB budget), %d flattened (%.1f MB raster) | Heap: %.1f of %.1f MB",
+				strokes.size(), getStrokeMemory() / BYTES_PER_MEGABYTE, memoryBudget / BYTES_PER_MEGABYTE,
+				flattenedStrokes, getBaseLayerMemory() / BYTES_PER_MEGABYTE,
+				(runtime.totalMemory() - runtime.freeMemory()) / BYTES_PER_MEGABYTE, runtime.maxMemory() / BYTES_PER_MEGABYTE);
 	}
 
 	/**
@@ -234,18 +720,98 @@ public class DrawingPanel extends JPanel {
 	}
 
 	/**
-	 * Clears all points from the image and causes a re-draw
+	 * <p>Clears all points from the image and causes a re-draw</p>
+	 * 
+	 * <p>A stroke still being drawn is kept, as are those of collaborating users, so a clear made by another
+	 * user while this user is drawing does not lose the stroke for this user only</p>
 	 */
 	public void clearPoints() {
 		
 		while (!strokes.isEmpty()) {
 			strokes.pop();
 		}
-		currentStroke = null;
+		strokeMemory = 0;
+		baseLayer = null;
+		flattenedStrokes = 0;
+		strokesChanged();
+		for (DrawingListener l : listeners) l.drawingCleared();
 		
 		refreshDrawing();
 	}
 
+	/**
+	 * <p>Fills the region around a point, and the same region in every other sector, with the brush colour</p>
+	 * 
+	 * <p>Regions are bounded by the strokes of the drawing but not the sector lines. The region is found once in the
+	 * first sector and added to the drawing as a single stroke of the fill brush, so it can be undone.
+	 * If reflection is on the region around the reflected point is filled too.</p>
+	 * 
+	 * @param x The x coordinate of the point on the panel
+	 * @param y The y coordinate of the point on the panel
+	 */
+	public void fill(int x, int y) {
+		
+		BufferedImage boundary = renderFillBoundary();
+		int offsetX = boundary.getWidth()/2 - drawing.getWidth()/2;
+		int offsetY = boundary.getHeight()/2 - drawing.getHeight()/2;
+		List<StrokePoint> spans = SymmetricFill.findSpans(boundary, numberOfSectors, x + offsetX, y + offsetY, reflect, FILL_TOLERANCE);
+		
+		if (spans.isEmpty()) return;
+		
+		beginStroke(new FillStroke(numberOfSectors, brushColour));
+		for (StrokePoint point : spans) addStrokePoint(point);
+		updateDrawing();
+		finishStroke();
+	}
+	
+	// Draws the drawing without sector lines, only within the bounds of the first sector, for finding regions to fill
+	// The image is a square as wide as the diagonal of the drawing so the first sector reaches every corner when rotated
+	private BufferedImage renderFillBoundary() {
+		
+		int size = (int) Math.ceil(Math.hypot(drawing.getWidth(), drawing.getHeight())) + 2;
+		BufferedImage boundary = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = boundary.createGraphics();
+		Graphics2D strokeGraphics;
+		Rectangle bounds;
+		double radius = Math.hypot(boundary.getWidth(), boundary.getHeight());
+		Path2D wedge = new Path2D.Double();
+		
+		g2.setColor(DEFAULT_BACKGROUND_COLOUR);
+		g2.fillRect(0, 0, boundary.getWidth(), boundary.getHeight());
+		
+		// Regions are only searched for within the first sector, so nothing outside its bounds is drawn
+		if (numberOfSectors > 1) {
+			wedge.moveTo(boundary.getWidth()/2, boundary.getHeight()/2);
+			for (int i = 0; i <= 8; i++) {
+				wedge.lineTo(boundary.getWidth()/2 + radius * Math.cos(Math.PI*2*i/(8*numberOfSectors)), boundary.getHeight()/2 + radius * Math.sin(Math.PI*2*i/(8*numberOfSectors)));
+			}
+			bounds = wedge.getBounds();
+			bounds.grow(2, 2);
+			g2.clip(bounds);
+		}
+		
+		if (baseLayer != null) {
+			g2.drawImage(baseLayer, boundary.getWidth()/2 - baseLayer.getWidth()/2, boundary.getHeight()/2 - baseLayer.getHeight()/2, null);
+		}
+		
+		for (Stroke s : strokes) {
+			strokeGraphics = (Graphics2D) g2.create();
+			renderQuality.apply(strokeGraphics);
+			s.getBrush().draw(strokeGraphics, s, 0, boundary.getWidth()/2, boundary.getHeight()/2, numberOfSectors);
+			strokeGraphics.dispose();
+		}
+		for (Stroke s : remoteStrokes) {
+			strokeGraphics = (Graphics2D) g2.create();
+			renderQuality.apply(strokeGraphics);
+			s.getBrush().draw(strokeGraphics, s, 0, boundary.getWidth()/2, boundary.getHeight()/2, numberOfSectors);
+			strokeGraphics.dispose();
+		}
+		
+		g2.dispose();
+		
+		return boundary;
+	}
+
 	/**
 	 * Gets the number of sectors currently being used to draw on the image
 	 * @return
@@ -260,12 +826,276 @@ public class DrawingPanel extends JPanel {
 	public void undo() {
 		
 		if (!strokes.isEmpty() ) {
-			strokes.pop();
+			Stroke undone = strokes.pop();
+			strokeMemory -= undone.getEstimatedSize();
+			strokesChanged();
+			for (DrawingListener l : listeners) l.strokeUndone(undone);
 			refreshDrawing();
 		}
 		
 	}
 
+	/**
+	 * Gets the log that drawing commands on this panel are recorded to
+	 * 
+	 * @return The event log, or null if commands are not being recorded
+	 */
+	public DrawingEventLog getEventLog() {
+		return eventLog;
+	}
+
+	/**
+	 * Sets the log that drawing commands on this panel are recorded to
+	 * 
+	 * @param eventLog The event log to record to, or null to stop recording
+	 */
+	public void setEventLog(DrawingEventLog eventLog) {
+		
+		if (this.eventLog != null) listeners.remove(this.eventLog);
+		this.eventLog = eventLog;
+		if (eventLog != null) listeners.add(eventLog);
+		
+	}
+
+	/**
+	 * Adds a listener to be notified of drawing commands made on this panel
+	 * 
+	 * @param listener
+	 */
+	public void addDrawingListener(DrawingListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * Removes a listener previously added to this panel
+	 * 
+	 * @param listener
+	 */
+	public void removeDrawingListener(DrawingListener listener) {
+		listeners.remove(listener);
+	}
+	/**
+	 * Sets if the user may draw on this panel with the mouse
+	 * 
+	 * @param drawingEnabled
+	 */
+	public void setDrawingEnabled(boolean drawingEnabled) {
+		this.drawingEnabled = drawingEnabled;
+	}
+
+	// Begins a new stroke with the specified brush
+	void beginStroke(int brushSize, Color colour, boolean reflected, Brush brush) {
+		beginStroke(new Stroke(brushSize, colour, reflected, brush));
+	}
+	
+	// Begins drawing a new stroke without any points
+	private void beginStroke(Stroke stroke) {
+		
+		currentStroke = stroke;
+		drawnPoints = 0;
+		if (isDrafting()) saveDraftBase();
+		for (DrawingListener l : listeners) l.strokeBegun(currentStroke);
+		
+	}
+
+	// Adds a point to the stroke currently being drawn
+	void addStrokePoint(StrokePoint point) {
+		
+		currentStroke.points.add(point);
+		for (DrawingListener l : listeners) l.strokePointAdded(currentStroke, point);
+		
+	}
+
+	// Finishes the current stroke being drawn and adds it to the stack
+	void finishStroke() {
+		
+		Stroke finished = currentStroke;
+		
+		currentStroke = null;
+		
+		if (finished != null) {
+			strokes.push(finished);
+			strokesChanged();
+			if (draftStrokeCount >= 0) refineDraft();
+			for (DrawingListener l : listeners) l.strokeFinished(finished, 0);
+			if (compressStrokes) finished.compress();
+			strokeMemory += finished.getEstimatedSize();
+			enforceMemoryBudget();
+		}
+		
+	}
+
+	/**
+	 * Begins displaying a stroke being drawn by a collaborating user
+	 * 
+	 * @param stroke The stroke, which may already have points
+	 */
+	public void addRemoteStroke(Stroke stroke) {
+		
+		remoteStrokes.add(stroke);
+		strokesChanged();
+		drawStroke(stroke);
+		animator.drawingChanged();
+		repaint();
+	}
+
+	/**
+	 * Draws points newly added to a stroke being drawn by a collaborating user
+	 * 
+	 * @param stroke A stroke previously passed to <b>addRemoteStroke</b>
+	 * @param firstPoint The index of the first point not yet drawn
+	 */
+	public void extendRemoteStroke(Stroke stroke, int firstPoint) {
+		
+		drawStroke(stroke, firstPoint);
+		strokesChanged();
+		animator.drawingChanged();
+		repaint();
+	}
+
+	/**
+	 * <p>Adds a finished stroke from a collaborating user to the drawing so it can be undone and re-drawn.
+	 * Listeners are notified that the stroke is finished.</p>
+	 * 
+	 * <p>The stroke can be placed beneath the newest strokes, so it is in the same order as in every other
+	 * user's drawing. It has already been drawn so nothing is re-drawn.</p>
+	 * 
+	 * @param stroke A stroke previously passed to <b>addRemoteStroke</b>
+	 * @param above The number of the newest strokes to place the stroke beneath
+	 */
+	public void finishRemoteStroke(Stroke stroke, int above) {
+		
+		int index = Math.max(0, strokes.size() - above);
+		
+		remoteStrokes.remove(stroke);
+		strokes.add(index, stroke);
+		
+		// Refining a draft only re-draws strokes above where it began, so a stroke placed beneath is drawn into the draft base instead
+		if (draftStrokeCount >= 0 && index < draftStrokeCount) {
+			draftStrokeCount++;
+			drawStroke(draftBase, stroke, 0);
+		}
+		
+		strokesChanged();
+		for (DrawingListener l : listeners) l.strokeFinished(stroke, strokes.size() - 1 - index);
+		if (compressStrokes) stroke.compress();
+		strokeMemory += stroke.getEstimatedSize();
+		enforceMemoryBudget();
+	}
+
+	/**
+	 * <p>Removes a specific stroke from the drawing and causes a re-draw</p>
+	 * 
+	 * <p>Used when a collaborating user undoes a stroke. Listeners are notified if the stroke was finished,
+	 * a stroke still being drawn was never notified so neither is its removal.</p>
+	 * 
+	 * @param stroke The stroke to remove
+	 */
+	public void removeStroke(Stroke stroke) {
+		
+		if (strokes.remove(stroke)) {
+			strokeMemory -= stroke.getEstimatedSize();
+			strokesChanged();
+			for (DrawingListener l : listeners) l.strokeUndone(stroke);
+			refreshDrawing();
+		} else if (remoteStrokes.remove(stroke)) {
+			strokesChanged();
+			refreshDrawing();
+		}
+	}
+
+	/**
+	 * <p>Replaces the whole drawing with the specified state and re-draws the image</p>
+	 * 
+	 * <p>Used to jump to a point in a recorded session. The change is not recorded to the event log.</p>
+	 * 
+	 * @param state The state to display
+	 */
+	public void loadState(DrawingState state) {
+		
+		strokes.clear();
+		strokes.addAll(state.strokes);
+		strokeMemory = 0;
+		for (Stroke s : strokes) {
+			if (compressStrokes) s.compress();
+			strokeMemory += s.getEstimatedSize();
+		}
+		currentStroke = state.currentStroke;
+		baseLayer = state.baseLayer;
+		flattenedStrokes = 0;
+		strokesChanged();
+		
+		numberOfSectors = state.numberOfSectors;
+		showSectors = state.showSectors;
+		brushColour = state.brushColour;
+		
+		refreshDrawing();
+	}
+
+	/**
+	 * <p>Draws newly committed strokes and the stroke in progress on top of the current image</p>
+	 * 
+	 * <p>Cheaper than <b>loadState</b> when a recorded session has only added strokes since it was last displayed.
+	 * The change is not recorded to the event log.</p>
+	 * 
+	 * @param committed Strokes finished since the drawing was last displayed, oldest first
+	 * @param inProgress The stroke now being drawn, or null if there is none
+	 */
+	public void appendStrokes(List<Stroke> committed, Stroke inProgress) {
+		
+		// A stroke in progress when last displayed is the first committed, so only its undrawn points are drawn
+		for (Stroke s : committed) {
+			drawStroke(s, s == currentStroke ? drawnPoints : 0);
+			strokes.push(s);
+			if (compressStrokes) s.compress();
+			strokeMemory += s.getEstimatedSize();
+		}
+		if (inProgress != currentStroke) drawnPoints = 0;
+		currentStroke = inProgress;
+		strokesChanged();
+		enforceMemoryBudget();
+		
+		updateDrawing();
+	}
+
+	/**
+	 * Gets the animator used to animate the drawing
+	 * 
+	 * @return The animator for this panel
+	 */
+	public DoilyAnimator getAnimator() {
+		return animator;
+	}
+
+	/**
+	 * Gets the tracer which records the time taken for mouse events to be drawn and painted
+	 * 
+	 * @return The latency tracer for this panel, disabled until enabled
+	 */
+	public LatencyTracer getLatencyTracer() {
+		return latencyTracer;
+	}
+
+	// Copies the drawn image into an image of the same size, used by the animator
+	void copyDrawing(BufferedImage target) {
+		
+		Graphics2D g2 = target.createGraphics();
+		g2.drawImage(drawing, 0, 0, null);
+		g2.dispose();
+	}
+
+	// Draws the strokes after the last fill into a single sector, and the strokes up to it in the sectors of the drawing,
+	// on transparent images the size of the panel, returning false if there are no strokes in the underlay; used by the animator
+	boolean renderMotif(BufferedImage target, BufferedImage underlayTarget) {
+		
+		int split = motifStart();
+		
+		drawStrokes(target, 1, renderQuality, split, strokes.size() + remoteStrokes.size(), 1);
+		if (split > 0) drawStrokes(underlayTarget, 1, renderQuality, 0, split, numberOfSectors);
+		
+		return split > 0;
+	}
+
 	/**
 	 * Creates an exact copy of the image being displayed in the drawing panel
 	 * 
@@ -283,11 +1113,20 @@ public class DrawingPanel extends JPanel {
 		super.paintComponent(g);
 		Graphics2D g2 = (Graphics2D) g;
 		
-		g2.drawImage(drawing, 0, 0, null);
+		if (animator.isAnimating() && animator.paintFrame(g2)) {
+			// The animator has painted its most recent frame
+		} else if (previewImage != null) {
+			// Show the sector preview stretched over the panel
+			renderQuality.apply(g2);
+			g2.drawImage(previewImage, 0, 0, getWidth(), getHeight(), null);
+		} else {
+			g2.drawImage(drawing, 0, 0, null);
+		}
 
 		// Displays a transparent representation of the brush size and colour at the current mouse position
 		if (mousePosition != null) {
 
+			renderQuality.apply(g2);
 			g2.setColor(new Color(getBrushColour().getRed(),getBrushColour().getGreen(),getBrushColour().getBlue(),BRUSH_HOVER_TRANSPARENCY));
 			g2.fillOval(mousePosition.x - getBrushSize()/2,mousePosition.y -getBrushSize()/2,getBrushSize(),getBrushSize());
 
@@ -309,40 +1148,47 @@ public class DrawingPanel extends JPanel {
 		// Draws a new point at the mouse location
 		private void mouseDraw(MouseEvent e) {
 			
-			if (currentStroke == null) currentStroke = new Stroke(brushSize, brushColour, reflect);
+			if (currentStroke == null) beginStroke(brushSize, brushColour, reflect, brush);
 			
 			if (currentStroke.getReflected()) {
-				currentStroke.points.add(new StrokePoint(getWidth()/2 - e.getX(), getHeight()/2 - e.getY(), e.getX() - getWidth()/2, getHeight()/2 - e.getY()));
+				addStrokePoint(new StrokePoint(getWidth()/2 - e.getX(), getHeight()/2 - e.getY(), e.getX() - getWidth()/2, getHeight()/2 - e.getY()));
 			} else {
-				currentStroke.points.add(new StrokePoint(getWidth()/2 - e.getX(), getHeight()/2 - e.getY()));
+				addStrokePoint(new StrokePoint(getWidth()/2 - e.getX(), getHeight()/2 - e.getY()));
 			}
 			
 		}
 		
-		// Finishes the current stroke being drawn and adds it to the stack
-		private void finishStroke() {
-			
-			if (currentStroke != null) strokes.push(currentStroke);
-			currentStroke = null;
-			
-		}
-		
 		@Override
 		public void mousePressed(MouseEvent e) {
 			
+			long trace;
+			
 			super.mousePressed(e);
-			mouseDraw(e);
-			updateDrawing();
+			if (!drawingEnabled) return;
+			trace = latencyTracer.begin(e.getWhen());
+			if (brush == Brushes.FILL) {
+				// The fill brush fills the clicked region rather than drawing a stroke
+				fill(e.getX(), e.getY());
+			} else {
+				mouseDraw(e);
+				updateDrawing();
+			}
+			latencyTracer.mark(trace, LatencyTracer.DRAWN);
 			
 		}
 		
 		@Override
 		public void mouseDragged(MouseEvent e) {
 			
+			long trace;
+			
 			super.mouseDragged(e);
+			if (!drawingEnabled || brush == Brushes.FILL) return;
+			trace = latencyTracer.begin(e.getWhen());
 			mouseDraw(e);
 			mousePosition = null;
 			updateDrawing();
+			latencyTracer.mark(trace, LatencyTracer.DRAWN);
 			
 		}
 		
@@ -350,6 +1196,7 @@ public class DrawingPanel extends JPanel {
 		public void mouseReleased(MouseEvent e) {
 			
 			super.mouseReleased(e);
+			if (!drawingEnabled) return;
 			finishStroke();
 			updateDrawing();
 			
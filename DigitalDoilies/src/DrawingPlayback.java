@@ -0,0 +1,222 @@
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.Timer;
+
+/**
+ * <p>Plays back a session recorded in a <b>DrawingEventLog</b> on a <b>DrawingPanel</b></p>
+ *
+ * <p>Playback runs at between <b>MINIMUM_SPEED</b> and <b>MAXIMUM_SPEED</b> times the recorded speed.
+ * Seeking rebuilds the drawing from the nearest keyframe in the log and re-draws it once,
+ * while normal playback only draws the strokes added since the last frame.</p>
+ *
+ * <p>All methods must be called on the event dispatch thread</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class DrawingPlayback {
+
+	public static final double MINIMUM_SPEED = 1; // The slowest playback speed relative to the recording
+	public static final double MAXIMUM_SPEED = 100; // The fastest playback speed relative to the recording
+
+	private static final int FRAME_DELAY = 16; // The number of milliseconds between each frame of playback
+
+	private DrawingEventLog log; // The log being played back
+	private DrawingPanel panel; // The panel the session is displayed on
+	private DrawingState state; // The state of the drawing at the current playback position
+	private Timer timer; // Timer which advances playback each frame
+
+	private long position; // The current playback position in milliseconds of recorded time
+	private long nextSequence; // The sequence number of the next event to be played
+	private long lastFrame; // The System.nanoTime() of the previous frame
+	private double speed; // The current playback speed relative to the recording
+
+	private List<PlaybackListener> listeners; // Listeners notified when the playback position changes
+
+	/**
+	 * Creates a new playback of the specified log on the specified panel, positioned at the start of the log
+	 *
+	 * @param log The log to be played back
+	 * @param panel The panel to display the session on, should not be recording to the log
+	 */
+	public DrawingPlayback(DrawingEventLog log, DrawingPanel panel) {
+
+		this.log = log;
+		this.panel = panel;
+		this.speed = MINIMUM_SPEED;
+		this.listeners = new ArrayList<PlaybackListener>();
+
+		this.timer = new Timer(FRAME_DELAY, new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				advance();
+			}
+
+		});
+
+		seek(log.getStartTime());
+
+	}
+
+	/**
+	 * Jumps directly to the specified position, re-drawing the panel once
+	 *
+	 * @param time The position in milliseconds of recorded time, clamped to the recorded session
+	 */
+	public void seek(long time) {
+
+		position = Math.max(log.getStartTime(), Math.min(time, log.getEndTime()));
+		state = log.rebuild(position);
+		nextSequence = log.findSequence(position);
+
+		panel.loadState(state);
+		notifyListeners();
+
+	}
+
+	/**
+	 * Starts playing from the current position, restarting from the beginning if at the end
+	 */
+	public void play() {
+
+		if (position >= log.getEndTime()) seek(log.getStartTime());
+
+		lastFrame = System.nanoTime();
+		timer.start();
+
+	}
+
+	/**
+	 * Pauses playback at the current position
+	 */
+	public void pause() {
+		timer.stop();
+	}
+
+	/**
+	 * Returns if the session is currently being played
+	 *
+	 * @return true if playing, else false
+	 */
+	public boolean isPlaying() {
+		return timer.isRunning();
+	}
+
+	/**
+	 * Sets the playback speed
+	 *
+	 * @param speed The speed relative to the recording, clamped between MINIMUM_SPEED and MAXIMUM_SPEED
+	 */
+	public void setSpeed(double speed) {
+		this.speed = Math.max(MINIMUM_SPEED, Math.min(speed, MAXIMUM_SPEED));
+	}
+
+	/**
+	 * Gets the playback speed
+	 *
+	 * @return The speed relative to the recording
+	 */
+	public double getSpeed() {
+		return speed;
+	}
+
+	/**
+	 * Gets the current playback position
+	 *
+	 * @return The position in milliseconds of recorded time
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Adds a listener to be notified whenever the playback position changes
+	 *
+	 * @param listener
+	 */
+	public void addPlaybackListener(PlaybackListener listener) {
+		listeners.add(listener);
+	}
+
+	// Plays every event up to the new position and draws what they added
+	private void advance() {
+
+		long now = System.nanoTime();
+		long end;
+		boolean structural = false; // True if an event was played which cannot be drawn on top of the current image
+		List<Stroke> committed = new ArrayList<Stroke>();
+		byte type;
+
+		position += (long) ((now - lastFrame) / 1000000.0 * speed);
+		lastFrame = now;
+
+		// If the events to be played have been overwritten in the log the drawing must be rebuilt
+		if (nextSequence < log.getStartSequence()) {
+			seek(position);
+			return;
+		}
+
+		end = log.findSequence(position);
+
+		for (long sequence = nextSequence; sequence < end; sequence++) {
+
+			type = log.getType(sequence);
+			state.apply(log, sequence);
+
+			// A collaborating user's stroke placed beneath newer strokes cannot be drawn on top
+			if (type == DrawingEventLog.STROKE_END || (type == DrawingEventLog.REMOTE_STROKE_END && log.getArgument(sequence, 0) == 0)) {
+				if (!state.strokes.isEmpty()) committed.add(state.strokes.get(state.strokes.size() - 1));
+			} else if (type != DrawingEventLog.STROKE_BEGIN && type != DrawingEventLog.FILL_BEGIN && type != DrawingEventLog.STROKE_POINT
+					&& type != DrawingEventLog.COLOUR && type != DrawingEventLog.REMOTE_STROKE_BEGIN && type != DrawingEventLog.REMOTE_FILL_BEGIN
+					&& type != DrawingEventLog.REMOTE_STROKE_POINT) {
+				structural = true;
+			}
+
+		}
+
+		nextSequence = end;
+
+		if (structural) {
+			panel.loadState(state);
+		} else if (!committed.isEmpty() || state.currentStroke != null) {
+			panel.appendStrokes(committed, state.currentStroke);
+		}
+
+		if (position >= log.getEndTime()) {
+			position = log.getEndTime();
+			pause();
+		}
+
+		notifyListeners();
+
+	}
+
+	// Notifies all listeners of the current position
+	private void notifyListeners() {
+		for (PlaybackListener listener : listeners) {
+			listener.positionChanged(this);
+		}
+	}
+
+	/**
+	 * Listener notified when the position of a <b>DrawingPlayback</b> changes
+	 *
+	 * @author Oliver Martin (ojm1g16)
+	 *
+	 */
+	public interface PlaybackListener {
+
+		/**
+		 * Called after the playback position changes
+		 *
+		 * @param playback The playback whose position changed
+		 */
+		void positionChanged(DrawingPlayback playback);
+
+	}
+
+}
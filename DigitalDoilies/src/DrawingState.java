@@ -0,0 +1,188 @@
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>A plain model of everything needed to render a drawing at some instant</p>
+ *
+ * <p>Built by the <b>DrawingEventLog</b> from its keyframes, and used by <b>DrawingPlayback</b> to rebuild
+ * a drawing at any point in a recorded session without touching a <b>DrawingPanel</b> per event</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class DrawingState {
+
+	/**
+	 * <p>The committed strokes of the drawing, oldest first</p>
+	 *
+	 * <p>Committed strokes are compressed and never modified so may be shared between states</p>
+	 */
+	public List<Stroke> strokes;
+
+	/**
+	 * Strokes flattened to save memory, drawn centred beneath the committed strokes, null if there are none. Never changed so may be shared.
+	 */
+	public BufferedImage baseLayer;
+
+	/**
+	 * The stroke currently being drawn, null if there is none
+	 */
+	public Stroke currentStroke;
+
+	/**
+	 * A stroke finished by a collaborating user whose points are still being applied from a log, null if there is none
+	 */
+	public Stroke remoteStroke;
+
+	public int numberOfSectors; // The number of sectors being used to draw
+	public boolean showSectors; // True if the sector lines are displayed
+	public Color brushColour; // The brush colour last selected
+
+	/**
+	 * Creates a new empty drawing state
+	 *
+	 * @param numberOfSectors The number of sectors to begin with
+	 * @param showSectors If the sector lines are displayed to begin with
+	 * @param brushColour The brush colour to begin with
+	 */
+	public DrawingState(int numberOfSectors, boolean showSectors, Color brushColour) {
+
+		this.strokes = new ArrayList<Stroke>();
+		this.currentStroke = null;
+		this.remoteStroke = null;
+
+		this.numberOfSectors = numberOfSectors;
+		this.showSectors = showSectors;
+		this.brushColour = brushColour;
+
+	}
+
+	/**
+	 * <p>Creates a copy of this state which can be modified independently</p>
+	 *
+	 * <p>Committed strokes are shared, strokes in progress have their points copied</p>
+	 *
+	 * @return A copy of this state
+	 */
+	public DrawingState copy() {
+
+		DrawingState copy = new DrawingState(numberOfSectors, showSectors, brushColour);
+
+		copy.strokes.addAll(strokes);
+		copy.baseLayer = baseLayer;
+		copy.currentStroke = copyPoints(currentStroke);
+		copy.remoteStroke = copyPoints(remoteStroke);
+
+		return copy;
+	}
+
+	// Copies a stroke in progress with its points, null if there is none
+	private static Stroke copyPoints(Stroke stroke) {
+
+		Stroke copy;
+
+		if (stroke == null) return null;
+
+		copy = stroke.copySettings();
+		copy.points.addAll(stroke.points);
+
+		return copy;
+	}
+
+	/**
+	 * Applies a single event from an event log to this state
+	 *
+	 * @param log The log holding the event
+	 * @param sequence The sequence number of the event in the log
+	 */
+	public void apply(DrawingEventLog log, long sequence) {
+
+		int index;
+
+		switch (log.getType(sequence)) {
+
+		case DrawingEventLog.STROKE_BEGIN:
+			currentStroke = newStroke(log, sequence);
+			break;
+
+		case DrawingEventLog.FILL_BEGIN:
+			currentStroke = newFill(log, sequence);
+			break;
+
+		case DrawingEventLog.STROKE_POINT:
+			if (currentStroke != null) currentStroke.points.add(newPoint(log, sequence));
+			break;
+
+		case DrawingEventLog.STROKE_END:
+			if (currentStroke != null) {
+				currentStroke.compress();
+				strokes.add(currentStroke);
+			}
+			currentStroke = null;
+			break;
+
+		case DrawingEventLog.SECTORS:
+			numberOfSectors = log.getArgument(sequence, 0);
+			break;
+
+		case DrawingEventLog.SHOW_SECTORS:
+			showSectors = log.getArgument(sequence, 0) != 0;
+			break;
+
+		case DrawingEventLog.COLOUR:
+			brushColour = new Color(log.getArgument(sequence, 0), true);
+			break;
+
+		case DrawingEventLog.UNDO:
+			index = strokes.size() - 1 - log.getArgument(sequence, 0);
+			if (index >= 0) strokes.remove(index);
+			break;
+
+		case DrawingEventLog.CLEAR:
+			strokes.clear();
+			baseLayer = null;
+			remoteStroke = null;
+			break;
+
+		case DrawingEventLog.REMOTE_STROKE_BEGIN:
+			remoteStroke = newStroke(log, sequence);
+			break;
+
+		case DrawingEventLog.REMOTE_FILL_BEGIN:
+			remoteStroke = newFill(log, sequence);
+			break;
+
+		case DrawingEventLog.REMOTE_STROKE_POINT:
+			if (remoteStroke != null) remoteStroke.points.add(newPoint(log, sequence));
+			break;
+
+		case DrawingEventLog.REMOTE_STROKE_END:
+			if (remoteStroke != null) {
+				remoteStroke.compress();
+				strokes.add(Math.max(0, strokes.size() - log.getArgument(sequence, 0)), remoteStroke);
+			}
+			remoteStroke = null;
+			break;
+
+		}
+
+	}
+
+	// Creates the stroke begun by a STROKE_BEGIN or REMOTE_STROKE_BEGIN event
+	private static Stroke newStroke(DrawingEventLog log, long sequence) {
+		return new Stroke(log.getArgument(sequence, 0), new Color(log.getArgument(sequence, 1), true), log.getArgument(sequence, 2) != 0, Brushes.get(log.getArgument(sequence, 3)));
+	}
+
+	// Creates the fill begun by a FILL_BEGIN or REMOTE_FILL_BEGIN event
+	private static Stroke newFill(DrawingEventLog log, long sequence) {
+		return new FillStroke(log.getArgument(sequence, 0), new Color(log.getArgument(sequence, 1), true));
+	}
+
+	// Creates the point added by a STROKE_POINT or REMOTE_STROKE_POINT event
+	private static StrokePoint newPoint(DrawingEventLog log, long sequence) {
+		return new StrokePoint(log.getArgument(sequence, 0), log.getArgument(sequence, 1), log.getArgument(sequence, 2), log.getArgument(sequence, 3));
+	}
+
+}
@@ -0,0 +1,145 @@
+import java.awt.Graphics2D;
+
+/**
+ * <p>A brush which draws the region found by a <b>SymmetricFill</b> into every sector</p>
+ *
+ * <p>A fill is a <b>FillStroke</b> drawn with this brush, whose points are the spans of the region in the fundamental
+ * wedge. Each pixel of a sector is filled if the pixel it rotates back onto in the wedge is in one of the spans,
+ * so the sectors meet without gaps or overlaps.</p>
+ *
+ * <p>A fill is always drawn in the sectors it was found with, whatever the number of sectors it is given,
+ * so it cannot be drawn as part of a rotated motif.</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class FillBrush implements Brush {
+
+	private final int id; // The id of this brush
+
+	/**
+	 * Creates a new fill brush
+	 *
+	 * @param id The id of this brush
+	 */
+	public FillBrush(int id) {
+		this.id = id;
+	}
+
+	@Override
+	public int getId() {
+		return id;
+	}
+
+	@Override
+	public boolean followsSectors() {
+		return false;
+	}
+
+	// Draws the spans from the specified point onwards into every sector the fill was found with, whatever the number given
+	// A span whose two points are split between parts is drawn with the second part
+	@Override
+	public void draw(Graphics2D g2, Stroke stroke, int firstPoint, int centreX, int centreY, int numberOfSectors) {
+
+		int fillSectors = stroke instanceof FillStroke ? ((FillStroke) stroke).getSectors() : 1;
+		double cosWedge = Math.cos(Math.PI * 2 / fillSectors);
+		double sinWedge = Math.sin(Math.PI * 2 / fillSectors);
+		int minU = Integer.MAX_VALUE;
+		int maxU = Integer.MIN_VALUE;
+		int minV = Integer.MAX_VALUE;
+		int maxV = Integer.MIN_VALUE;
+		int maskWidth;
+		boolean[] mask;
+		double cos;
+		double sin;
+		double pu;
+		double pv;
+		int cellU;
+		int cellV;
+		int fromU;
+		int toU;
+		int fromV;
+		int toV;
+		int start;
+		int spanStart;
+		boolean inside;
+		Stroke.PointReader p;
+
+		// Each span is a pair of points, so only whole pairs are drawn
+		firstPoint -= firstPoint % 2;
+		if (firstPoint + 1 >= stroke.getPointCount()) return;
+
+		// Mark the spans on a mask covering the region in the wedge
+		p = stroke.readPoints(firstPoint);
+		while (p.next()) {
+			spanStart = p.x;
+			if (!p.next()) break;
+			minU = Math.min(minU, spanStart);
+			maxU = Math.max(maxU, p.x);
+			minV = Math.min(minV, p.y);
+			maxV = Math.max(maxV, p.y + 1);
+		}
+
+		maskWidth = maxU - minU;
+		mask = new boolean[maskWidth * (maxV - minV)];
+
+		p = stroke.readPoints(firstPoint);
+		while (p.next()) {
+			spanStart = p.x;
+			if (!p.next()) break;
+			for (int u = spanStart; u < p.x; u++) {
+				mask[(p.y - minV) * maskWidth + u - minU] = true;
+			}
+		}
+
+		g2.setColor(stroke.getColour());
+
+		for (int k = 0; k < fillSectors; k++) {
+
+			cos = Math.cos(Math.PI * 2 * k / fillSectors);
+			sin = Math.sin(Math.PI * 2 * k / fillSectors);
+
+			// Only the pixels within the rotated bounds of the mask can be in this sector's copy of the region
+			fromU = (int) Math.floor(Math.min(Math.min(minU * cos - minV * sin, maxU * cos - minV * sin), Math.min(minU * cos - maxV * sin, maxU * cos - maxV * sin))) - 1;
+			toU = (int) Math.ceil(Math.max(Math.max(minU * cos - minV * sin, maxU * cos - minV * sin), Math.max(minU * cos - maxV * sin, maxU * cos - maxV * sin))) + 1;
+			fromV = (int) Math.floor(Math.min(Math.min(minU * sin + minV * cos, maxU * sin + minV * cos), Math.min(minU * sin + maxV * cos, maxU * sin + maxV * cos))) - 1;
+			toV = (int) Math.ceil(Math.max(Math.max(minU * sin + minV * cos, maxU * sin + minV * cos), Math.max(minU * sin + maxV * cos, maxU * sin + maxV * cos))) + 1;
+
+			for (int v = fromV; v < toV; v++) {
+
+				start = Integer.MIN_VALUE;
+
+				for (int u = fromU; u <= toU; u++) {
+
+					// Rotate the centre of the pixel back into the wedge and look it up on the mask
+					pu = (u + 0.5) * cos + (v + 0.5) * sin;
+					pv = (v + 0.5) * cos - (u + 0.5) * sin;
+					cellU = (int) Math.floor(pu) - minU;
+					cellV = (int) Math.floor(pv) - minV;
+
+					inside = u < toU
+							&& cellU >= 0 && cellU < maskWidth && cellV >= 0 && cellV < maxV - minV
+							&& mask[cellV * maskWidth + cellU]
+							&& (fillSectors == 1 || SymmetricFill.inWedge(pu, pv, cosWedge, sinWedge));
+
+					if (inside) {
+						if (start == Integer.MIN_VALUE) start = u;
+					} else if (start != Integer.MIN_VALUE) {
+						g2.fillRect(centreX + start, centreY + v, u - start, 1);
+						start = Integer.MIN_VALUE;
+					}
+
+				}
+
+			}
+
+		}
+
+	}
+
+	@Override
+	public String toString() {
+		return "Fill";
+	}
+
+}
@@ -0,0 +1,44 @@
+import java.awt.Color;
+
+/**
+ * <p>A fill, the region found by a <b>SymmetricFill</b>, kept as a stroke of the fill brush so that it can be
+ * recorded, shared and undone like any other stroke</p>
+ *
+ * <p>Each span of the region in the fundamental wedge is held as a pair of points on the row of the span,
+ * the first pixel of the span followed by the pixel after its last, relative to the centre of the drawing.
+ * A fill also keeps the number of sectors the region was found with, as the region was only bounded in those
+ * sectors, and always covers those sectors whatever the number of sectors of the drawing is later changed to.</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class FillStroke extends Stroke {
+
+	private final int sectors; // The number of sectors the region was found with
+
+	/**
+	 * Creates a new fill without any spans
+	 *
+	 * @param sectors The number of sectors the region was found with
+	 * @param colour The colour of the fill
+	 */
+	public FillStroke(int sectors, Color colour) {
+		super(0, colour, false, Brushes.FILL);
+		this.sectors = Math.max(1, sectors);
+	}
+
+	/**
+	 * Get the number of sectors the region was found with, which the fill is always drawn in
+	 *
+	 * @return The number of sectors of the fill
+	 */
+	public int getSectors() {
+		return sectors;
+	}
+
+	@Override
+	public Stroke copySettings() {
+		return new FillStroke(sectors, getColour());
+	}
+
+}
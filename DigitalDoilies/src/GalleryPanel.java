@@ -18,6 +18,7 @@ import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JToggleButton;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.border.Border;
 import javax.swing.border.CompoundBorder;
 import javax.swing.border.EmptyBorder;
@@ -37,6 +38,7 @@ public class GalleryPanel extends JPanel {
 	private List<JToggleButton> galleryImages; // The list of images added to the gallery
 	private JButton deleteButton; // Button to delete selected images in the gallery
 	
+	private int panelWidth; // The width of the gallery panel in pixels
 	private int displayedImageWidth;  // The width for images added to the gallery taking into account the scroll-bar
 
 	private static final int APPROX_SROLL_BAR_WIDTH = 20; // Approximate width of the vertical scroll bar used to properly place the gallery images
@@ -47,7 +49,10 @@ public class GalleryPanel extends JPanel {
 	private static final int IMAGE_SELECT_STROKE = 5; // The width of the cross displayed when an image is selected
 	
 	/**
-	 * Create a new gallery panel with the specified width
+	 * <p>Create a new gallery panel with the specified width</p>
+	 * 
+	 * <p>The components of the gallery are not created until the panel has been added to a window and the window has
+	 * had the chance to paint, or until an image is first added, so the gallery does not delay the start of the application</p>
 	 * 
 	 * @param panelWidth
 	 */
@@ -56,10 +61,35 @@ public class GalleryPanel extends JPanel {
 		// Initialise and set defaults
 		
 		this.galleryImages = new ArrayList<JToggleButton>();
+		this.panelWidth = panelWidth;
 		this.displayedImageWidth = panelWidth - APPROX_SROLL_BAR_WIDTH;
 		
 		this.setLayout(new BorderLayout());
 		
+		// Reserve the width of the gallery until its components are created
+		this.setPreferredSize(new Dimension(panelWidth, panelWidth));
+
+	}
+
+	@Override
+	public void addNotify() {
+		
+		super.addNotify();
+		
+		// Create the gallery after any events already queued, such as painting the window
+		SwingUtilities.invokeLater(new Runnable() {
+			public void run() {
+				createGallery();
+			}
+		});
+		
+	}
+
+	// Creates the components of the gallery if they have not been created yet
+	private void createGallery() {
+		
+		if (imagePanel != null) return;
+		
 		imagePanel = new JPanel();
 		imagePanel.setLayout(new BoxLayout(imagePanel, BoxLayout.PAGE_AXIS));
 		
@@ -85,6 +115,9 @@ public class GalleryPanel extends JPanel {
 		// Add the items to the pane
 		this.add(galleryScroll, BorderLayout.CENTER);
 		this.add(deleteButton, BorderLayout.SOUTH);
+		
+		this.setPreferredSize(null);
+		this.revalidate();
 
 	}
 
@@ -94,6 +127,9 @@ public class GalleryPanel extends JPanel {
 	 * @param image
 	 */
 	public void addImage(BufferedImage image) {
+		
+		createGallery();
+		
 		if (galleryImages.size() < MAXIMUM_GALLERY_IMAGES) {
 			
 			Image scaledImage; // The scaled image to be displayed in the gallery
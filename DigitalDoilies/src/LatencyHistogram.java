@@ -0,0 +1,172 @@
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * <p>A histogram of latencies in nanoseconds with a fixed relative precision, in the style of HdrHistogram</p>
+ *
+ * <p>Values below <b>SUB_BUCKETS</b> are counted exactly. Larger values are counted in buckets covering each power of two,
+ * each split into <b>SUB_BUCKETS</b> / 2 equal parts, so every value is counted to within 1.6% of its size
+ * using a fixed array of counts whatever the range of values</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 7; // The number of significant bits kept of each value
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // The number of values counted exactly
+	private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2; // The number of parts each power of two is split into
+	private static final double[] REPORTED_PERCENTILES = { 50, 75, 90, 95, 99, 99.9, 99.99, 100 }; // The percentiles printed by outputPercentiles
+
+	private final long[] counts; // The number of values counted in each bucket
+	private long totalCount; // The number of values recorded
+	private long total; // The sum of the values recorded
+	private long min; // The smallest value recorded
+	private long max; // The largest value recorded
+
+	/**
+	 * Creates a new empty histogram
+	 */
+	public LatencyHistogram() {
+		this.counts = new long[indexOf(Long.MAX_VALUE) + 1];
+		reset();
+	}
+
+	/**
+	 * Removes every recorded value
+	 */
+	public void reset() {
+		Arrays.fill(counts, 0);
+		totalCount = 0;
+		total = 0;
+		min = Long.MAX_VALUE;
+		max = 0;
+	}
+
+	/**
+	 * Records a value
+	 *
+	 * @param value The value in nanoseconds, negative values are counted as 0
+	 */
+	public void record(long value) {
+
+		value = Math.max(0, value);
+
+		counts[indexOf(value)]++;
+		totalCount++;
+		total += value;
+		min = Math.min(min, value);
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * Gets the number of values recorded
+	 *
+	 * @return The number of values
+	 */
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * Gets the largest value recorded
+	 *
+	 * @return The largest value, 0 if none have been recorded
+	 */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Gets the smallest value recorded
+	 *
+	 * @return The smallest value, 0 if none have been recorded
+	 */
+	public long getMin() {
+		return totalCount == 0 ? 0 : min;
+	}
+
+	/**
+	 * Gets the mean of the values recorded
+	 *
+	 * @return The mean value, 0 if none have been recorded
+	 */
+	public double getMean() {
+		return totalCount == 0 ? 0 : (double) total / totalCount;
+	}
+
+	/**
+	 * Gets the value which the specified percentage of recorded values are at or below
+	 *
+	 * @param percentile The percentage, from 0 to 100
+	 * @return The highest value in the bucket holding that percentile, or the largest value recorded if smaller
+	 */
+	public long getValueAtPercentile(double percentile) {
+
+		long target = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * totalCount));
+		long seen = 0;
+
+		if (totalCount == 0) return 0;
+
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= target) return Math.min(max, highestValueAt(i));
+		}
+
+		return max;
+	}
+
+	/**
+	 * Prints the value at a range of percentiles, with the count of values at or below each
+	 *
+	 * @param out The stream to print to
+	 * @param scale The number of nanoseconds in the printed unit, such as 1000000 for milliseconds
+	 */
+	public void outputPercentiles(PrintStream out, double scale) {
+
+		long value;
+		long below;
+
+		out.println(String.format("%12s %12s %12s", "Value", "Percentile", "TotalCount"));
+
+		for (double percentile : REPORTED_PERCENTILES) {
+
+			value = getValueAtPercentile(percentile);
+			below = 0;
+			for (int i = 0; i <= indexOf(value); i++) below += counts[i];
+
+			out.println(String.format("%12.3f %12.5f %12d", value / scale, percentile / 100, below));
+		}
+
+		out.println(String.format("#[Mean    = %12.3f, Min = %12.3f, Max = %12.3f]", getMean() / scale, getMin() / scale, getMax() / scale));
+		out.println(String.format("#[Total count = %d]", totalCount));
+	}
+
+	// Gets the index of the bucket counting a value
+	private static int indexOf(long value) {
+
+		int shift;
+
+		if (value < SUB_BUCKETS) return (int) value;
+
+		// Keep the top SUB_BUCKET_BITS bits of the value, which fall between HALF_SUB_BUCKETS and SUB_BUCKETS
+		shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+
+		return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + (int) (value >>> shift) - HALF_SUB_BUCKETS;
+	}
+
+	// Gets the highest value counted by a bucket
+	private static long highestValueAt(int index) {
+
+		int shift;
+		long subBucket;
+
+		if (index < SUB_BUCKETS) return index;
+
+		shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+		subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+}
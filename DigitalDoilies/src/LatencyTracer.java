@@ -0,0 +1,297 @@
+import java.awt.Toolkit;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.swing.RepaintManager;
+
+/**
+ * <p>Traces the time taken for mouse events to reach the screen, stage by stage</p>
+ *
+ * <p>Each traced event is given a sequence number by <b>begin</b> and a slot in a fixed size ring buffer, in which
+ * the System.nanoTime() it reached each stage is recorded:</p>
+ *
+ * <ul>
+ * <li><b>OS_EVENT</b> - when the event was created, estimated from its millisecond timestamp</li>
+ * <li><b>DISPATCHED</b> - when the event reached the drawing panel's mouse listener</li>
+ * <li><b>DRAWN</b> - when the event's points had been drawn into the drawing</li>
+ * <li><b>PAINTED</b> - when the drawing was next copied to the screen and the display flushed</li>
+ * </ul>
+ *
+ * <p>Recording never blocks or allocates, so tracing barely affects what it measures. Slots are claimed with an
+ * atomic counter and published by storing their sequence number once written, so samples can be read from any
+ * thread while events are traced; a slot overwritten while being read is skipped. Once the buffer is full the
+ * oldest samples are overwritten.</p>
+ *
+ * <p>Samples can be summarised as <b>LatencyHistogram</b>s, or dumped to a file with <b>dump</b>.</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class LatencyTracer {
+
+	public static final int OS_EVENT = 0; // The stage when the event was created
+	public static final int DISPATCHED = 1; // The stage when the event reached the mouse listener
+	public static final int DRAWN = 2; // The stage when the event had been drawn into the drawing
+	public static final int PAINTED = 3; // The stage when the drawing had been painted to the screen
+	public static final int STAGES = 4; // The number of stages recorded for each event
+
+	private static final String[] STAGE_NAMES = { "event", "dispatched", "drawn", "painted" }; // The names of the stages in dumps
+	private static final int DEFAULT_CAPACITY = 8192; // The number of events held by default
+	private static final double NANOSECONDS_PER_MILLISECOND = 1000000; // Used when reporting latencies in milliseconds
+	private static final long UNPUBLISHED = -1; // The sequence held by a slot while it is being written
+
+	private final int mask; // Masks a sequence number to its slot, the capacity is a power of two
+	private final AtomicLongArray times; // The time each slot's event reached each stage, 0 if it has not
+	private final AtomicLongArray sequences; // The sequence number of the event held by each slot
+	private final AtomicLong next; // The sequence number of the next event to be traced
+	private long paintedFrom; // The sequence number of the first event which may not yet have been painted
+	private volatile boolean enabled; // True if events are being traced
+
+	/**
+	 * Creates a new tracer holding a default number of events
+	 */
+	public LatencyTracer() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates a new tracer
+	 *
+	 * @param capacity The number of most recent events held, rounded up to a power of two
+	 */
+	public LatencyTracer(int capacity) {
+
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+
+		this.mask = size - 1;
+		this.times = new AtomicLongArray(size * STAGES);
+		this.sequences = new AtomicLongArray(size);
+		this.next = new AtomicLong();
+		this.enabled = false;
+
+		for (int i = 0; i < size; i++) sequences.set(i, UNPUBLISHED);
+
+	}
+
+	/**
+	 * Sets if events are traced, events are not recorded while tracing is disabled
+	 *
+	 * @param enabled True to trace events
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Returns if events are being traced
+	 *
+	 * @return True if events are being traced
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Begins tracing an event as it is dispatched
+	 *
+	 * @param when The System.currentTimeMillis() the event was created, as given by InputEvent.getWhen()
+	 * @return The sequence number to mark the event's later stages with, -1 if tracing is disabled
+	 */
+	public long begin(long when) {
+
+		long dispatched;
+		long age;
+		long sequence;
+		int slot;
+
+		if (!enabled) return -1;
+
+		dispatched = System.nanoTime();
+		age = Math.max(0, System.currentTimeMillis() - when);
+		sequence = next.getAndIncrement();
+		slot = (int) (sequence & mask);
+
+		// Hide the slot from readers while it is re-written
+		sequences.set(slot, UNPUBLISHED);
+		times.set(slot * STAGES + OS_EVENT, dispatched - age * 1000000);
+		times.set(slot * STAGES + DISPATCHED, dispatched);
+		times.set(slot * STAGES + DRAWN, 0);
+		times.set(slot * STAGES + PAINTED, 0);
+		sequences.set(slot, sequence);
+
+		return sequence;
+	}
+
+	/**
+	 * Records the time an event reached a stage
+	 *
+	 * @param sequence The sequence number returned by <b>begin</b>, nothing is recorded if it is negative
+	 * @param stage The stage reached
+	 */
+	public void mark(long sequence, int stage) {
+
+		int slot = (int) (sequence & mask);
+
+		// The slot may already have been re-used if the event was held for longer than the buffer lasts
+		if (sequence >= 0 && sequences.get(slot) == sequence) times.set(slot * STAGES + stage, System.nanoTime());
+	}
+
+	/**
+	 * <p>Replaces Swing's repaint manager with one which marks drawn events as painted after each round of painting</p>
+	 *
+	 * <p>Swing paints components into a back buffer which is only copied to the screen once painting is finished,
+	 * so events are marked once the repaint manager has finished and the display has been flushed. The display is
+	 * only flushed when there are drawn events waiting to be marked. Must be called on the event dispatch thread.</p>
+	 */
+	public void installRepaintManager() {
+
+		RepaintManager.setCurrentManager(new RepaintManager() {
+
+			@Override
+			public void paintDirtyRegions() {
+
+				super.paintDirtyRegions();
+
+				if (enabled && paintedFrom < next.get()) {
+					Toolkit.getDefaultToolkit().sync();
+					painted();
+				}
+
+			}
+
+		});
+
+	}
+
+	/**
+	 * Records that every event drawn since the last call has been painted, called once the drawing is on the screen
+	 */
+	public void painted() {
+
+		long now;
+		long end;
+		long sequence;
+		int slot;
+
+		if (!enabled) return;
+
+		now = System.nanoTime();
+		end = next.get();
+		sequence = Math.max(paintedFrom, end - mask - 1);
+
+		for (; sequence < end; sequence++) {
+
+			slot = (int) (sequence & mask);
+
+			if (sequences.get(slot) != sequence) continue;
+			// Stop at the first event still being drawn, it is painted by a later paint
+			if (times.get(slot * STAGES + DRAWN) == 0) break;
+			times.compareAndSet(slot * STAGES + PAINTED, 0, now);
+
+		}
+
+		paintedFrom = sequence;
+	}
+
+	/**
+	 * Summarises the time taken between two stages by every completely traced event held
+	 *
+	 * @param from The earlier stage
+	 * @param to The later stage
+	 * @return A histogram of the latencies in nanoseconds
+	 */
+	public LatencyHistogram histogram(int from, int to) {
+
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] sample = new long[STAGES];
+		long end = next.get();
+
+		for (long sequence = Math.max(0, end - mask - 1); sequence < end; sequence++) {
+			if (read(sequence, sample)) histogram.record(sample[to] - sample[from]);
+		}
+
+		return histogram;
+	}
+
+	/**
+	 * Describes the latency from events being created to being painted, for a status line
+	 *
+	 * @return The median and 99th percentile latencies in milliseconds
+	 */
+	public String getReport() {
+
+		LatencyHistogram histogram = histogram(OS_EVENT, PAINTED);
+
+		return String.format("Input latency: %.1f ms median, %.1f ms 99th percentile over %d events",
+				histogram.getValueAtPercentile(50) / NANOSECONDS_PER_MILLISECOND,
+				histogram.getValueAtPercentile(99) / NANOSECONDS_PER_MILLISECOND,
+				histogram.getTotalCount());
+	}
+
+	/**
+	 * <p>Writes every completely traced event held to a file, and histograms of them to the same file name ending in .hgrm</p>
+	 *
+	 * <p>The samples are written as comma separated values, one line for each event, giving the nanoseconds
+	 * each stage was reached after the event was created. The histograms give the latency of each stage,
+	 * and of the whole path, in milliseconds at a range of percentiles.</p>
+	 *
+	 * @param file The file to write the samples to
+	 * @throws IOException If either file could not be written
+	 */
+	public void dump(File file) throws IOException {
+
+		long[] sample = new long[STAGES];
+		long end = next.get();
+
+		try (PrintStream out = new PrintStream(file, "UTF-8")) {
+
+			out.print("sequence");
+			for (int stage = DISPATCHED; stage < STAGES; stage++) out.print("," + STAGE_NAMES[stage] + "_ns");
+			out.println();
+
+			for (long sequence = Math.max(0, end - mask - 1); sequence < end; sequence++) {
+
+				if (!read(sequence, sample)) continue;
+
+				out.print(sequence);
+				for (int stage = DISPATCHED; stage < STAGES; stage++) out.print("," + (sample[stage] - sample[OS_EVENT]));
+				out.println();
+
+			}
+
+			if (out.checkError()) throw new IOException("Could not write " + file);
+		}
+
+		try (PrintStream out = new PrintStream(new File(file.getPath() + ".hgrm"), "UTF-8")) {
+
+			for (int stage = DISPATCHED; stage < STAGES; stage++) {
+				out.println("# " + STAGE_NAMES[stage - 1] + " to " + STAGE_NAMES[stage] + " (ms)");
+				histogram(stage - 1, stage).outputPercentiles(out, NANOSECONDS_PER_MILLISECOND);
+				out.println();
+			}
+
+			out.println("# " + STAGE_NAMES[OS_EVENT] + " to " + STAGE_NAMES[PAINTED] + " (ms)");
+			histogram(OS_EVENT, PAINTED).outputPercentiles(out, NANOSECONDS_PER_MILLISECOND);
+
+			if (out.checkError()) throw new IOException("Could not write " + file.getPath() + ".hgrm");
+		}
+
+	}
+
+	// Copies the stage times of an event if it is still held and has been painted, returning if it was
+	private boolean read(long sequence, long[] sample) {
+
+		int slot = (int) (sequence & mask);
+
+		if (sequences.get(slot) != sequence) return false;
+
+		for (int stage = 0; stage < STAGES; stage++) sample[stage] = times.get(slot * STAGES + stage);
+
+		// The slot may have been re-used while it was copied
+		return sequences.get(slot) == sequence && sample[PAINTED] != 0;
+	}
+
+}
@@ -0,0 +1,149 @@
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+
+import javax.swing.JButton;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * A window which replays the session recorded in a <b>DrawingEventLog</b>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+@SuppressWarnings("serial")
+public class PlaybackWindow extends JFrame {
+
+	private DrawingPanel drawingPanel; // The panel the session is replayed on
+	private DrawingPlayback playback; // The playback of the session
+
+	private JButton playButton; // Button to play or pause the playback
+	private JLabel speedLabel; // Label to identify the speed slider
+	private JSlider speedSlider; // Slider to change the playback speed
+	private JSlider positionSlider; // Slider showing and changing the playback position
+
+	private boolean updatingPosition; // True while the position slider is being moved to match the playback
+
+	private static final int DEFAULT_WIDTH = 600; // Default width for the playback window pixels
+	private static final int DEFAULT_HEIGHT = 600; // Default height for the playback window pixels
+	private static final int MINIMUM_WIDTH = 300; // Minimum width for the playback window pixels
+	private static final int MINIMUM_HEIGHT = 300; // Minimum height for the playback window pixels
+
+	private static final int PANEL_ROWS = 2; // Number of rows for the playback controls grid layout
+	private static final int PANEL_COLS = 2; // Number of columns for the playback controls grid layout
+
+	/**
+	 * Creates a new window replaying the specified log from its start
+	 *
+	 * @param log The log to be replayed
+	 * @param initialBrushSize The brush size to display the hover brush with
+	 */
+	public PlaybackWindow(DrawingEventLog log, int initialBrushSize) {
+
+		super("Digital Doilies Replay");
+
+		JPanel controls = new JPanel(new GridLayout(PANEL_ROWS, PANEL_COLS));
+
+		// The replay panel must not record or accept drawing itself
+
+		drawingPanel = new DrawingPanel(1, initialBrushSize);
+		drawingPanel.setEventLog(null);
+		drawingPanel.setDrawingEnabled(false);
+		drawingPanel.setDraftWhileDragging(false);
+
+		playback = new DrawingPlayback(log, drawingPanel);
+
+		// Create the controls for the playback
+
+		playButton = new JButton("Play");
+		playButton.addActionListener(new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent arg0) {
+				if (playback.isPlaying()) {
+					playback.pause();
+				} else {
+					playback.play();
+				}
+				playButton.setText(playback.isPlaying() ? "Pause" : "Play");
+			}
+
+		});
+
+		speedSlider = new JSlider((int) DrawingPlayback.MINIMUM_SPEED, (int) DrawingPlayback.MAXIMUM_SPEED, (int) DrawingPlayback.MINIMUM_SPEED);
+		speedLabel = new JLabel("Speed (" + speedSlider.getValue() + "x)");
+		speedLabel.setHorizontalAlignment(JLabel.CENTER);
+		speedSlider.addChangeListener(new ChangeListener() {
+
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				playback.setSpeed(speedSlider.getValue());
+				speedLabel.setText("Speed (" + speedSlider.getValue() + "x)");
+			}
+
+		});
+
+		positionSlider = new JSlider((int) log.getStartTime(), (int) Math.max(log.getEndTime(), log.getStartTime() + 1), (int) log.getStartTime());
+		positionSlider.addChangeListener(new ChangeListener() {
+
+			@Override
+			public void stateChanged(ChangeEvent e) {
+				if (!updatingPosition) {
+					playback.seek(positionSlider.getValue());
+				}
+			}
+
+		});
+
+		// Keep the position slider and play button in step with the playback
+
+		playback.addPlaybackListener(new DrawingPlayback.PlaybackListener() {
+
+			@Override
+			public void positionChanged(DrawingPlayback p) {
+				updatingPosition = true;
+				// The log keeps recording, and flattening strokes moves its start, so the range follows the log before the value is set
+				positionSlider.setMinimum((int) log.getStartTime());
+				positionSlider.setMaximum((int) Math.max(log.getEndTime(), log.getStartTime() + 1));
+				positionSlider.setValue((int) p.getPosition());
+				updatingPosition = false;
+				playButton.setText(p.isPlaying() ? "Pause" : "Play");
+			}
+
+		});
+
+		controls.add(playButton);
+		controls.add(positionSlider);
+		controls.add(speedLabel);
+		controls.add(speedSlider);
+
+		this.setLayout(new BorderLayout());
+		this.add(drawingPanel, BorderLayout.CENTER);
+		this.add(controls, BorderLayout.SOUTH);
+
+		// Stop the playback timer when the window is closed
+
+		this.addWindowListener(new WindowAdapter() {
+			public void windowClosed(WindowEvent e) {
+				playback.pause();
+			}
+		});
+
+		this.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+		this.setSize(DEFAULT_WIDTH, DEFAULT_HEIGHT);
+		this.setMinimumSize(new Dimension(MINIMUM_WIDTH, MINIMUM_HEIGHT));
+
+		this.setVisible(true);
+
+	}
+
+}
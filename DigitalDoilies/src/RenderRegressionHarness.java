@@ -0,0 +1,427 @@
+import java.awt.Color;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+/**
+ * <p>A headless golden image regression harness for the rendering of a <b>DrawingPanel</b></p>
+ *
+ * <p>Each case feeds a scripted sequence of mouse drags and commands through a new drawing panel and compares
+ * the finished image with a reference PNG, pixel by pixel. A pixel matches if none of its channels differ from
+ * the reference by more than the tolerance. The time taken to draw each case stroke by stroke, and the best time
+ * of a full re-draw, are reported so changes to rendering can be shown to be both correct and faster.</p>
+ *
+ * <p>Usage: <b>java -Djava.awt.headless=true RenderRegressionHarness record|check [directory] [tolerance]</b></p>
+ *
+ * <ul>
+ * <li>record: draws every case and writes its reference image to the directory</li>
+ * <li>check: draws every case and compares it with its reference image, writing a difference image for any which fail.
+ * Exits with status 1 if any case fails.</li>
+ * </ul>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class RenderRegressionHarness {
+
+	private static final String DEFAULT_DIRECTORY = "golden"; // The directory reference images are kept in by default
+	private static final int DEFAULT_TOLERANCE = 0; // The largest channel difference allowed by default
+	private static final int WIDTH = 320; // The width of the drawing panel for every case
+	private static final int HEIGHT = 320; // The height of the drawing panel for every case
+	private static final int REFRESH_RUNS = 5; // The number of full re-draws timed for each case
+	private static final int STROKE_POINTS = 40; // The number of mouse samples in each scripted stroke
+	private static final int STEP = 9; // The largest distance moved between mouse samples
+
+	private final List<RenderCase> cases; // The cases to run
+
+	/**
+	 * Creates a harness holding every rendering case
+	 */
+	public RenderRegressionHarness() {
+
+		cases = new ArrayList<RenderCase>();
+
+		cases.add(new RenderCase("single-sector", 1, 10) {
+			void draw(DrawingPanel panel) {
+				drag(panel, 1, 3);
+			}
+		});
+
+		cases.add(new RenderCase("twelve-sectors", 12, 10) {
+			void draw(DrawingPanel panel) {
+				drag(panel, 2, 4);
+			}
+		});
+
+		cases.add(new RenderCase("thirty-sectors-thin", 30, 2) {
+			void draw(DrawingPanel panel) {
+				drag(panel, 3, 4);
+			}
+		});
+
+		cases.add(new RenderCase("reflected", 8, 12) {
+			void draw(DrawingPanel panel) {
+				panel.toggleReflection();
+				drag(panel, 4, 3);
+			}
+		});
+
+		cases.add(new RenderCase("sizes-and-colours", 6, 2) {
+			void draw(DrawingPanel panel) {
+				Color[] colours = {Color.RED, new Color(0, 255, 128), new Color(64, 128, 255, 160), Color.YELLOW};
+				for (int i = 0; i < colours.length; i++) {
+					panel.setBrushColour(colours[i]);
+					panel.setBrushSize(2 + i * 9);
+					drag(panel, 5 + i, 1);
+				}
+			}
+		});
+
+		cases.add(new RenderCase("hidden-sectors", 9, 8) {
+			void draw(DrawingPanel panel) {
+				panel.toggleSectors();
+				drag(panel, 9, 3);
+			}
+		});
+
+		cases.add(new RenderCase("undo", 10, 8) {
+			void draw(DrawingPanel panel) {
+				drag(panel, 10, 4);
+				panel.undo();
+				panel.undo();
+			}
+		});
+
+		cases.add(new RenderCase("clear-then-draw", 5, 8) {
+			void draw(DrawingPanel panel) {
+				drag(panel, 11, 3);
+				panel.clearPoints();
+				drag(panel, 12, 2);
+			}
+		});
+
+		cases.add(new RenderCase("change-sectors", 4, 8) {
+			void draw(DrawingPanel panel) {
+				drag(panel, 13, 2);
+				panel.changeSectors(16);
+				drag(panel, 14, 1);
+			}
+		});
+
+		cases.add(new RenderCase("quality-preset", 12, 6) {
+			void draw(DrawingPanel panel) {
+				panel.setRenderQuality(RenderQuality.QUALITY);
+				drag(panel, 15, 3);
+			}
+		});
+
+		cases.add(new RenderCase("fast-preset", 12, 6) {
+			void draw(DrawingPanel panel) {
+				panel.setRenderQuality(RenderQuality.FAST);
+				drag(panel, 16, 3);
+			}
+		});
+
+		cases.add(new RenderCase("flattened", 7, 6) {
+			void draw(DrawingPanel panel) {
+				panel.setMemoryBudget(1, 2);
+				drag(panel, 17, 6);
+			}
+		});
+
+		cases.add(new RenderCase("symmetric-fill", 6, 6) {
+			void draw(DrawingPanel panel) {
+				drag(panel, 23, 6);
+				panel.toggleReflection();
+				panel.setBrush(Brushes.FILL);
+				panel.setBrushColour(new Color(40, 90, 200));
+				click(panel, WIDTH / 2 + 12, HEIGHT / 2 + 7);
+				panel.setBrushColour(new Color(220, 160, 0, 128));
+				click(panel, WIDTH / 2 + 70, HEIGHT / 2 - 20);
+			}
+		});
+
+		cases.add(new RenderCase("fill-then-change-sectors", 6, 6) {
+			void draw(DrawingPanel panel) {
+				drag(panel, 23, 6);
+				panel.setBrush(Brushes.FILL);
+				panel.setBrushColour(new Color(40, 90, 200));
+				click(panel, WIDTH / 2 + 12, HEIGHT / 2 + 7);
+				panel.changeSectors(3);
+			}
+		});
+
+		for (final Brush brush : Brushes.ALL) {
+			cases.add(new RenderCase("brush-" + brush.getId(), 8, 14) {
+				void draw(DrawingPanel panel) {
+					panel.setBrush(brush);
+					drag(panel, 18 + brush.getId(), 2);
+				}
+			});
+		}
+
+	}
+
+	/**
+	 * Runs the harness
+	 *
+	 * @param args record or check, then optionally the directory of reference images and the tolerance
+	 */
+	public static void main(String[] args) {
+
+		String command = args.length > 0 ? args[0] : "check";
+		File directory = new File(args.length > 1 ? args[1] : DEFAULT_DIRECTORY);
+		int tolerance = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_TOLERANCE;
+		boolean passed;
+
+		try {
+
+			if (command.equals("record")) {
+				passed = new RenderRegressionHarness().record(directory);
+			} else if (command.equals("check")) {
+				passed = new RenderRegressionHarness().check(directory, tolerance);
+			} else {
+				System.err.println("Usage: RenderRegressionHarness record|check [directory] [tolerance]");
+				passed = false;
+			}
+
+		} catch (IOException e) {
+			System.err.println("Could not access reference images: " + e.getMessage());
+			passed = false;
+		}
+
+		System.exit(passed ? 0 : 1);
+	}
+
+	/**
+	 * Draws every case and writes its image as the reference
+	 *
+	 * @param directory The directory to write the reference images to
+	 * @return true once every reference image is written
+	 * @throws IOException If an image cannot be written
+	 */
+	public boolean record(File directory) throws IOException {
+
+		Result result;
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			throw new IOException("Could not create " + directory);
+		}
+
+		for (RenderCase c : cases) {
+			result = run(c);
+			ImageIO.write(result.image, "png", new File(directory, c.name + ".png"));
+			System.out.println(String.format("%-22s recorded  draw %8.2f ms  refresh %8.2f ms", c.name, result.drawTime / 1e6, result.refreshTime / 1e6));
+		}
+
+		return true;
+	}
+
+	/**
+	 * Draws every case and compares its image with the reference
+	 *
+	 * @param directory The directory holding the reference images
+	 * @param tolerance The largest difference allowed in any channel of a pixel
+	 * @return true if every case matched its reference, else false
+	 * @throws IOException If an image cannot be read or written
+	 */
+	public boolean check(File directory, int tolerance) throws IOException {
+
+		boolean passed = true;
+		File file;
+		BufferedImage reference;
+		BufferedImage difference;
+		Result result;
+		int mismatched;
+		int largest;
+		int delta;
+
+		for (RenderCase c : cases) {
+
+			result = run(c);
+			file = new File(directory, c.name + ".png");
+
+			if (!file.isFile()) {
+				System.out.println(String.format("%-22s MISSING   %s", c.name, file));
+				passed = false;
+				continue;
+			}
+
+			reference = ImageIO.read(file);
+
+			if (reference.getWidth() != result.image.getWidth() || reference.getHeight() != result.image.getHeight()) {
+				System.out.println(String.format("%-22s FAILED    reference is %dx%d", c.name, reference.getWidth(), reference.getHeight()));
+				passed = false;
+				continue;
+			}
+
+			// Compare every channel of every pixel, marking mismatched pixels on a difference image
+			difference = new BufferedImage(reference.getWidth(), reference.getHeight(), BufferedImage.TYPE_INT_RGB);
+			mismatched = 0;
+			largest = 0;
+
+			for (int y = 0; y < reference.getHeight(); y++) {
+				for (int x = 0; x < reference.getWidth(); x++) {
+
+					delta = channelDifference(reference.getRGB(x, y), result.image.getRGB(x, y));
+					largest = Math.max(largest, delta);
+
+					if (delta > tolerance) {
+						mismatched++;
+						difference.setRGB(x, y, 0xFF0000);
+					} else {
+						difference.setRGB(x, y, (reference.getRGB(x, y) >> 2) & 0x3F3F3F);
+					}
+
+				}
+			}
+
+			if (mismatched > 0) {
+				ImageIO.write(result.image, "png", new File(directory, c.name + "-actual.png"));
+				ImageIO.write(difference, "png", new File(directory, c.name + "-diff.png"));
+				passed = false;
+			}
+
+			System.out.println(String.format("%-22s %-9s draw %8.2f ms  refresh %8.2f ms  %d pixels differ, largest difference %d",
+					c.name, mismatched > 0 ? "FAILED" : "passed", result.drawTime / 1e6, result.refreshTime / 1e6, mismatched, largest));
+
+		}
+
+		System.out.println(passed ? "All cases passed" : "Some cases failed");
+
+		return passed;
+	}
+
+	// Runs a single case on the event dispatch thread
+	private Result run(final RenderCase c) throws IOException {
+
+		final Result result = new Result();
+
+		try {
+
+			SwingUtilities.invokeAndWait(new Runnable() {
+				public void run() {
+
+					DrawingPanel panel = new DrawingPanel(c.sectors, c.brushSize);
+					long start;
+
+					panel.setSize(WIDTH, HEIGHT);
+					panel.setEventLog(null);
+					panel.changeSectors(c.sectors);
+
+					start = System.nanoTime();
+					c.draw(panel);
+					result.drawTime = System.nanoTime() - start;
+
+					result.image = panel.getImage();
+
+					// Time full re-draws of the finished drawing, keeping the fastest
+					result.refreshTime = Long.MAX_VALUE;
+					for (int i = 0; i < REFRESH_RUNS; i++) {
+						start = System.nanoTime();
+						panel.setRenderQuality(panel.getRenderQuality());
+						result.refreshTime = Math.min(result.refreshTime, System.nanoTime() - start);
+					}
+
+				}
+			});
+
+		} catch (InvocationTargetException e) {
+			throw new IOException("Case " + c.name + " failed to draw", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while drawing case " + c.name, e);
+		}
+
+		return result;
+	}
+
+	// Drags the mouse along a number of random walks from the centre of the panel, seeded so every run is the same
+	private static void drag(DrawingPanel panel, long seed, int strokes) {
+
+		Random random = new Random(seed);
+		int x;
+		int y;
+
+		for (int s = 0; s < strokes; s++) {
+
+			x = WIDTH / 2 + random.nextInt(WIDTH / 2) - WIDTH / 4;
+			y = HEIGHT / 2 + random.nextInt(HEIGHT / 2) - HEIGHT / 4;
+
+			mouse(panel, MouseEvent.MOUSE_PRESSED, x, y);
+
+			for (int i = 0; i < STROKE_POINTS; i++) {
+				x = Math.max(0, Math.min(WIDTH - 1, x + random.nextInt(STEP * 2 + 1) - STEP));
+				y = Math.max(0, Math.min(HEIGHT - 1, y + random.nextInt(STEP * 2 + 1) - STEP));
+				mouse(panel, MouseEvent.MOUSE_DRAGGED, x, y);
+			}
+
+			mouse(panel, MouseEvent.MOUSE_RELEASED, x, y);
+
+		}
+
+	}
+
+	// Clicks the mouse on the panel
+	private static void click(DrawingPanel panel, int x, int y) {
+		mouse(panel, MouseEvent.MOUSE_PRESSED, x, y);
+		mouse(panel, MouseEvent.MOUSE_RELEASED, x, y);
+	}
+
+	// Sends a mouse event to the panel as if from the user
+	private static void mouse(DrawingPanel panel, int id, int x, int y) {
+		panel.dispatchEvent(new MouseEvent(panel, id, 0, MouseEvent.BUTTON1_DOWN_MASK, x, y, 1, false, MouseEvent.BUTTON1));
+	}
+
+	// Returns the largest difference between the red, green and blue channels of two pixels
+	private static int channelDifference(int a, int b) {
+		return Math.max(Math.abs(((a >> 16) & 0xFF) - ((b >> 16) & 0xFF)),
+				Math.max(Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF)), Math.abs((a & 0xFF) - (b & 0xFF))));
+	}
+
+	/**
+	 * A scripted drawing with the sectors and brush size it begins with
+	 *
+	 * @author Oliver Martin (ojm1g16)
+	 *
+	 */
+	private static abstract class RenderCase {
+
+		private final String name; // The name of the case, used to name its reference image
+		private final int sectors; // The number of sectors the panel begins with
+		private final int brushSize; // The brush size the panel begins with
+
+		private RenderCase(String name, int sectors, int brushSize) {
+			this.name = name;
+			this.sectors = sectors;
+			this.brushSize = brushSize;
+		}
+
+		// Draws the case on a new panel
+		abstract void draw(DrawingPanel panel);
+
+	}
+
+	/**
+	 * The image drawn by a case and the time it took
+	 *
+	 * @author Oliver Martin (ojm1g16)
+	 *
+	 */
+	private static class Result {
+
+		private BufferedImage image; // The finished image
+		private long drawTime; // The nanoseconds taken to draw the case stroke by stroke
+		private long refreshTime; // The fewest nanoseconds taken to fully re-draw the finished image
+
+	}
+
+}
@@ -0,0 +1,88 @@
+import java.awt.BasicStroke;
+import java.awt.Graphics2D;
+
+/**
+ * A solid round brush which draws each stroke as a series of lines of the brush size
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class RoundBrush implements Brush {
+
+	private final int id; // The id of this brush
+
+	/**
+	 * Creates a new round brush
+	 *
+	 * @param id The id of this brush
+	 */
+	public RoundBrush(int id) {
+		this.id = id;
+	}
+
+	@Override
+	public int getId() {
+		return id;
+	}
+
+	@Override
+	public void draw(Graphics2D g2, Stroke stroke, int firstPoint, int centreX, int centreY, int numberOfSectors) {
+
+		Stroke.PointReader p = stroke.readPoints(Math.max(0, firstPoint - 1));
+		boolean hasLast = false; // True once there is a previous point to draw a line from
+		boolean single = stroke.getPointCount() == 1; // True if the stroke is a single point, drawn as a circle
+		int lastX = 0;
+		int lastY = 0;
+		int lastReflectionX = 0;
+		int lastReflectionY = 0;
+
+		g2.setColor(stroke.getColour());
+		g2.setStroke(new BasicStroke(stroke.getBrushSize(),BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+
+		// Lines of a later part of the stroke start from the last point already drawn
+		if (firstPoint > 0 && p.next()) {
+			hasLast = true;
+			lastX = p.x;
+			lastY = p.y;
+			lastReflectionX = p.reflectionX;
+			lastReflectionY = p.reflectionY;
+		}
+
+		while (p.next()) {
+
+			for (int i = 0; i < numberOfSectors; i++) {
+
+				if (hasLast) {
+					// If there is more than one point in the stroke draw a series of lines
+					g2.drawLine(centreX - p.x, centreY - p.y, centreX - lastX, centreY - lastY);
+					if (stroke.getReflected()) {
+						g2.drawLine(centreX - p.reflectionX, centreY - p.reflectionY, centreX - lastReflectionX, centreY - lastReflectionY);
+					}
+
+				} else if (single) {
+					// If there is only one point in the stroke draw a circle
+					g2.fillOval(centreX - p.x - stroke.getBrushSize()/2, centreY - p.y - stroke.getBrushSize()/2, stroke.getBrushSize(), stroke.getBrushSize());
+					if (stroke.getReflected()) {
+						g2.fillOval(centreX - p.reflectionX - stroke.getBrushSize()/2, centreY - p.reflectionY - stroke.getBrushSize()/2, stroke.getBrushSize(), stroke.getBrushSize());
+					}
+
+				}
+
+				g2.rotate(Math.PI*2/numberOfSectors, centreX,centreY);
+			}
+
+			hasLast = true;
+			lastX = p.x;
+			lastY = p.y;
+			lastReflectionX = p.reflectionX;
+			lastReflectionY = p.reflectionY;
+		}
+
+	}
+
+	@Override
+	public String toString() {
+		return "Round";
+	}
+
+}
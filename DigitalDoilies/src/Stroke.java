@@ -1,11 +1,17 @@
 import java.awt.Color;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * <p>A brush stroke of points drawn by the user</p>
  * 
- * <p>Stores data about the brush colour and size as well as if the points are reflected</p>
+ * <p>Stores data about the brush, its colour and size as well as if the points are reflected</p>
+ * 
+ * <p>Once a stroke is finished it can be compressed, storing each coordinate as the zig-zag varint encoded
+ * difference from the same coordinate of the previous point. Consecutive mouse samples are usually only a few
+ * pixels apart so most coordinates take a single byte. The points of a compressed stroke are best read with
+ * a <b>PointReader</b>, which decodes them in order without creating any objects.</p>
  * 
  * @author Oliver Martin (ojm1g16)
  *
@@ -15,13 +21,26 @@ public class Stroke {
 	/**
 	 * <p>Stores the list of <b>StrokePoint</b>s that make up the brush stroke</p>
 	 * 
-	 * <p>This is public for performance purposes when drawing graphics</p>
+	 * <p>This is public for performance purposes when drawing graphics.
+	 * Once the stroke is compressed the list cannot be modified, and decodes a new point for each call to get.</p>
 	 */
 	public List<StrokePoint> points;
 
 	private int brushSize; // Stores the brush size of the stroke
 	private Color colour; // Stores the colour of the stroke
 	private boolean reflected; // Stores if the stroke should be reflected
+	private Brush brush; // Stores the brush the stroke is drawn with
+
+	private byte[] packed; // The compressed points of the stroke, null if it is not compressed
+	private int packedPoints; // The number of points in packed
+	private boolean packedReflections; // True if packed holds the reflection of each point, false if every reflection is (0, 0)
+
+	private int measuredPoint; // The index of the point the stroke has been measured to, for brushes drawing it in parts
+	private double measuredLength; // The distance along the stroke from its first point to measuredPoint
+
+	private static final int STROKE_BYTES = 64; // Approximate heap size of a stroke and its list without any points
+	private static final int POINT_BYTES = 64; // Approximate heap size of each StrokePoint, its reflection Point and its list slot
+	private static final int ARRAY_BYTES = 16; // Approximate heap size of an array without any elements
 
 	/**
 	 * Creates a new stroke drawn by the user with specified parameters
@@ -31,7 +50,20 @@ public class Stroke {
 	 * @param reflected If the point is being drawn as a result of being reflected from another point
 	 */
 	public Stroke(int brushSize, Color brushColour, boolean reflected) {
+		this(brushSize, brushColour, reflected, Brushes.ROUND);
+	}
 
+	/**
+	 * Creates a new stroke drawn by the user with the specified brush
+	 * 
+	 * @param brushSize The current size of the brush in the application
+	 * @param colour The colour of the point
+	 * @param reflected If the point is being drawn as a result of being reflected from another point
+	 * @param brush The brush the stroke is drawn with
+	 */
+	public Stroke(int brushSize, Color brushColour, boolean reflected, Brush brush) {
+
+		this.brush = brush;
 		this.brushSize = brushSize;
 		this.colour = brushColour;
 		this.reflected = reflected;
@@ -58,6 +90,15 @@ public class Stroke {
 		return this.colour;
 	}
 
+	/**
+	 * Get the brush the stroke is drawn with
+	 * 
+	 * @return The brush of the stroke
+	 */
+	public Brush getBrush() {
+		return this.brush;
+	}
+
 	/**
 	 * Returns a boolean value indicating if this stroke is to be reflected
 	 * 
@@ -67,4 +108,285 @@ public class Stroke {
 		return reflected;
 	}
 
+	/**
+	 * Creates a new stroke with the same brush, brush size, colour and reflection as this one, without any points
+	 * 
+	 * @return The new stroke
+	 */
+	public Stroke copySettings() {
+		return new Stroke(brushSize, colour, reflected, brush);
+	}
+
+	/**
+	 * Estimates the number of bytes of heap used by this stroke and its points
+	 * 
+	 * @return The approximate size of this stroke in bytes
+	 */
+	public long getEstimatedSize() {
+		
+		if (packed != null) return STROKE_BYTES + ARRAY_BYTES + packed.length;
+		
+		return STROKE_BYTES + (long) points.size() * POINT_BYTES;
+	}
+
+	/**
+	 * Gets the number of points in the stroke
+	 * 
+	 * @return The number of points
+	 */
+	public int getPointCount() {
+		return packed != null ? packedPoints : points.size();
+	}
+
+	/**
+	 * Returns if the points of this stroke have been compressed
+	 * 
+	 * @return true if compressed, else false
+	 */
+	public boolean isCompressed() {
+		return packed != null;
+	}
+
+	/**
+	 * <p>Compresses the points of this stroke, which must be finished as no more points can be added afterwards</p>
+	 * 
+	 * <p>Does nothing if the stroke is already compressed</p>
+	 */
+	public void compress() {
+
+		byte[] buffer;
+		int length = 0;
+		int lastX = 0;
+		int lastY = 0;
+		int lastReflectionX = 0;
+		int lastReflectionY = 0;
+
+		if (packed != null) return;
+
+		packedReflections = false;
+		for (StrokePoint p : points) {
+			if (p.reflection.x != 0 || p.reflection.y != 0) packedReflections = true;
+		}
+
+		// Each zig-zag varint takes at most five bytes
+		buffer = new byte[points.size() * (packedReflections ? 20 : 10)];
+
+		for (StrokePoint p : points) {
+
+			length = writeDelta(buffer, length, p.x - lastX);
+			length = writeDelta(buffer, length, p.y - lastY);
+			lastX = p.x;
+			lastY = p.y;
+
+			if (packedReflections) {
+				length = writeDelta(buffer, length, p.reflection.x - lastReflectionX);
+				length = writeDelta(buffer, length, p.reflection.y - lastReflectionY);
+				lastReflectionX = p.reflection.x;
+				lastReflectionY = p.reflection.y;
+			}
+
+		}
+
+		packedPoints = points.size();
+		packed = new byte[length];
+		System.arraycopy(buffer, 0, packed, 0, length);
+
+		points = new PackedPointList();
+	}
+
+	/**
+	 * <p>Creates a reader positioned before the specified point</p>
+	 * 
+	 * <p>Points which are not compressed are read from the specified point straight away, so the stroke being drawn
+	 * can be read from its newest points in constant time. Compressed points are decoded from the first point.</p>
+	 * 
+	 * @param firstPoint The index of the first point the reader will read
+	 * @return A reader for the points of this stroke
+	 */
+	public PointReader readPoints(int firstPoint) {
+
+		PointReader reader = new PointReader(this);
+
+		if (packed == null) {
+			reader.index = Math.max(0, Math.min(firstPoint, points.size()));
+		} else {
+			for (int i = 0; i < firstPoint && reader.next(); i++);
+		}
+
+		return reader;
+	}
+
+	/**
+	 * <p>Gets the distance along the stroke from its first point to the specified point</p>
+	 * 
+	 * <p>The distance measured is kept, so measuring the stroke being drawn each time points are added to it
+	 * only measures the new points</p>
+	 * 
+	 * @param lastPoint The index of the point to measure to
+	 * @return The total length of the lines between the points up to that point
+	 */
+	public double getLength(int lastPoint) {
+
+		PointReader p;
+		int lastX;
+		int lastY;
+
+		lastPoint = Math.min(lastPoint, getPointCount() - 1);
+
+		// Points are only ever added to the end of a stroke, so an earlier point is measured again from the start
+		if (lastPoint < measuredPoint) {
+			measuredPoint = 0;
+			measuredLength = 0;
+		}
+
+		p = readPoints(measuredPoint);
+		if (!p.next()) return 0;
+
+		lastX = p.x;
+		lastY = p.y;
+
+		while (p.getIndex() < lastPoint && p.next()) {
+			measuredLength += Math.sqrt((double) (p.x - lastX) * (p.x - lastX) + (double) (p.y - lastY) * (p.y - lastY));
+			lastX = p.x;
+			lastY = p.y;
+		}
+
+		measuredPoint = p.getIndex();
+
+		return measuredLength;
+	}
+
+	// Writes a difference as a zig-zag varint, returning the position after it
+	private static int writeDelta(byte[] buffer, int position, int delta) {
+
+		int value = (delta << 1) ^ (delta >> 31);
+
+		while ((value & ~0x7F) != 0) {
+			buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[position++] = (byte) value;
+
+		return position;
+	}
+
+	/**
+	 * <p>Reads the points of a stroke in order, holding the coordinates of the point last read in its fields</p>
+	 * 
+	 * <p>Compressed points are decoded straight into the fields, so reading allocates nothing</p>
+	 * 
+	 * @author Oliver Martin (ojm1g16)
+	 *
+	 */
+	public static class PointReader {
+
+		public int x; // The x coordinate of the point last read
+		public int y; // The y coordinate of the point last read
+		public int reflectionX; // The x coordinate of the reflection of the point last read
+		public int reflectionY; // The y coordinate of the reflection of the point last read
+
+		private final Stroke stroke; // The stroke being read
+		private int index; // The number of points read so far
+		private int position; // The position of the next compressed point in the packed bytes
+
+		private PointReader(Stroke stroke) {
+			this.stroke = stroke;
+		}
+
+		/**
+		 * Reads the next point
+		 * 
+		 * @return true if a point was read, false if there are no more points
+		 */
+		public boolean next() {
+
+			StrokePoint p;
+			byte[] packed = stroke.packed;
+
+			if (packed == null) {
+
+				if (index >= stroke.points.size()) return false;
+
+				p = stroke.points.get(index);
+				x = p.x;
+				y = p.y;
+				reflectionX = p.reflection.x;
+				reflectionY = p.reflection.y;
+
+			} else {
+
+				if (index >= stroke.packedPoints) return false;
+
+				x += readDelta(packed);
+				y += readDelta(packed);
+
+				if (stroke.packedReflections) {
+					reflectionX += readDelta(packed);
+					reflectionY += readDelta(packed);
+				}
+
+			}
+
+			index++;
+
+			return true;
+		}
+
+		/**
+		 * Gets the index of the point last read
+		 * 
+		 * @return The index of the point last read, -1 if no point has been read
+		 */
+		public int getIndex() {
+			return index - 1;
+		}
+
+		// Reads a zig-zag varint difference
+		private int readDelta(byte[] packed) {
+
+			int value = 0;
+			int shift = 0;
+			byte b;
+
+			do {
+				b = packed[position++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while (b < 0);
+
+			return (value >>> 1) ^ -(value & 1);
+		}
+
+	}
+
+	/**
+	 * <p>An unmodifiable view of the compressed points of the stroke</p>
+	 * 
+	 * <p>Points are decoded when requested. Getting points in order is fast, getting an earlier point decodes again from the first.</p>
+	 * 
+	 * @author Oliver Martin (ojm1g16)
+	 *
+	 */
+	private class PackedPointList extends AbstractList<StrokePoint> {
+
+		private PointReader reader; // Reader positioned at the point last got
+
+		@Override
+		public StrokePoint get(int index) {
+
+			if (index < 0 || index >= packedPoints) throw new IndexOutOfBoundsException("Index " + index + " of " + packedPoints + " points");
+
+			if (reader == null || reader.getIndex() > index) reader = new PointReader(Stroke.this);
+			while (reader.getIndex() < index) reader.next();
+
+			return new StrokePoint(reader.x, reader.y, reader.reflectionX, reader.reflectionY);
+		}
+
+		@Override
+		public int size() {
+			return packedPoints;
+		}
+
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,162 @@
+import java.awt.Color;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * <p>Measures the effect of compressing the points of finished strokes</p>
+ *
+ * <p>Reports the memory used by a drawing of random strokes with and without compression, the rate points are
+ * decoded at when read in order, and the time taken to fully re-draw a <b>DrawingPanel</b> holding the strokes</p>
+ *
+ * <p>Usage: <b>java -Djava.awt.headless=true StrokeCompressionBenchmark [strokes] [points per stroke]</b></p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class StrokeCompressionBenchmark {
+
+	private static final int DEFAULT_STROKES = 500; // The number of strokes drawn by default
+	private static final int DEFAULT_POINTS = 200; // The number of points in each stroke by default
+	private static final int RUNS = 10; // The number of times each measurement is taken, keeping the fastest
+	private static final int SECTORS = 12; // The number of sectors of the drawing panel
+	private static final int SIZE = 600; // The width and height of the drawing panel
+	private static final int STEP = 6; // The largest distance moved between points
+
+	/**
+	 * Runs the benchmark
+	 *
+	 * @param args Optionally the number of strokes, then the number of points in each stroke
+	 */
+	public static void main(String[] args) {
+
+		int strokeCount = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_STROKES;
+		int pointCount = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_POINTS;
+		List<Stroke> plain = createStrokes(strokeCount, pointCount);
+		List<Stroke> compressed = createStrokes(strokeCount, pointCount);
+		long plainBytes = 0;
+		long compressedBytes = 0;
+		long plainDecode;
+		long compressedDecode;
+		long total = (long) strokeCount * pointCount;
+
+		for (Stroke s : compressed) s.compress();
+
+		for (int i = 0; i < strokeCount; i++) {
+			plainBytes += plain.get(i).getEstimatedSize();
+			compressedBytes += compressed.get(i).getEstimatedSize();
+		}
+
+		System.out.println(String.format("%d strokes of %d points", strokeCount, pointCount));
+		System.out.println(String.format("Memory:   %10.2f MB uncompressed, %10.2f MB compressed, ratio %.1f : 1, %.2f bytes per point",
+				plainBytes / 1048576.0, compressedBytes / 1048576.0, (double) plainBytes / compressedBytes, (double) compressedBytes / total));
+
+		plainDecode = timeDecode(plain);
+		compressedDecode = timeDecode(compressed);
+
+		System.out.println(String.format("Decode:   %10.1f M points/s uncompressed, %10.1f M points/s compressed",
+				total * 1e3 / plainDecode, total * 1e3 / compressedDecode));
+
+		System.out.println(String.format("Refresh:  %10.2f ms uncompressed, %10.2f ms compressed",
+				timeRefresh(plain, false) / 1e6, timeRefresh(compressed, true) / 1e6));
+
+	}
+
+	// Creates random walk strokes, seeded so every run is the same, a quarter of them reflected
+	private static List<Stroke> createStrokes(int strokeCount, int pointCount) {
+
+		Random random = new Random(1);
+		List<Stroke> strokes = new ArrayList<Stroke>();
+		Stroke stroke;
+		int x;
+		int y;
+
+		for (int s = 0; s < strokeCount; s++) {
+
+			stroke = new Stroke(2 + random.nextInt(10), new Color(random.nextInt()), s % 4 == 0);
+			x = random.nextInt(SIZE) - SIZE / 2;
+			y = random.nextInt(SIZE) - SIZE / 2;
+
+			for (int i = 0; i < pointCount; i++) {
+				x += random.nextInt(STEP * 2 + 1) - STEP;
+				y += random.nextInt(STEP * 2 + 1) - STEP;
+				stroke.points.add(stroke.getReflected() ? new StrokePoint(x, y, -x, y) : new StrokePoint(x, y));
+			}
+
+			strokes.add(stroke);
+		}
+
+		return strokes;
+	}
+
+	// Returns the fewest nanoseconds taken to read every point of the strokes in order
+	private static long timeDecode(List<Stroke> strokes) {
+
+		long best = Long.MAX_VALUE;
+		long start;
+		long checksum = 0;
+		Stroke.PointReader reader;
+
+		for (int r = 0; r < RUNS; r++) {
+
+			start = System.nanoTime();
+
+			for (Stroke s : strokes) {
+				reader = s.readPoints(0);
+				while (reader.next()) {
+					checksum += reader.x + reader.y + reader.reflectionX + reader.reflectionY;
+				}
+			}
+
+			best = Math.min(best, System.nanoTime() - start);
+		}
+
+		// Use the checksum so reading cannot be optimised away
+		if (checksum == 42) System.out.println();
+
+		return best;
+	}
+
+	// Returns the fewest nanoseconds taken to fully re-draw a panel holding the strokes
+	private static long timeRefresh(final List<Stroke> strokes, final boolean compress) {
+
+		final long[] best = { Long.MAX_VALUE };
+
+		try {
+
+			SwingUtilities.invokeAndWait(new Runnable() {
+				public void run() {
+
+					DrawingPanel panel = new DrawingPanel(SECTORS, 5);
+					DrawingState state = new DrawingState(SECTORS, true, Color.WHITE);
+					long start;
+
+					panel.setSize(SIZE, SIZE);
+					panel.setEventLog(null);
+					panel.setMemoryBudget(0, 0);
+					panel.setCompressStrokes(compress);
+					state.strokes.addAll(strokes);
+					panel.loadState(state);
+
+					for (int r = 0; r < RUNS; r++) {
+						start = System.nanoTime();
+						panel.setRenderQuality(panel.getRenderQuality());
+						best[0] = Math.min(best[0], System.nanoTime() - start);
+					}
+
+				}
+			});
+
+		} catch (InvocationTargetException e) {
+			throw new IllegalStateException("Refresh benchmark failed", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		return best[0];
+	}
+
+}
@@ -0,0 +1,274 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * <p>A scanline flood fill which finds the region of a symmetric drawing around a point, in every sector at once</p>
+ *
+ * <p>Since every sector of the drawing is a rotated copy of the first, the region is only searched for within the
+ * first sector, the fundamental wedge. Where the region reaches the edge of the wedge the search carries on from the
+ * matching point on the opposite edge, so regions which cross sector lines are still found whole. The region in the
+ * wedge is returned as a list of spans which <b>FillBrush</b> maps into every other sector.</p>
+ *
+ * <p>Spans are returned as the points of a <b>FillStroke</b> so that fills can be recorded, shared and undone
+ * as strokes. Each span is a pair of points on its row, its first pixel followed by the pixel after its last,
+ * relative to the centre of the drawing.</p>
+ *
+ * @author Oliver Martin (ojm1g16)
+ *
+ */
+public class SymmetricFill {
+
+	private static final int INITIAL_STACK = 1024; // The number of seeds the stack holds before growing
+
+	private final int[] pixels; // The pixels of the drawing being filled
+	private final int width; // The width of the drawing
+	private final int height; // The height of the drawing
+	private final int centreX; // The x coordinate the sectors are rotated about
+	private final int centreY; // The y coordinate the sectors are rotated about
+	private final int sectors; // The number of sectors in the drawing
+	private final double[] cos; // The cosine of the angle of each sector
+	private final double[] sin; // The sine of the angle of each sector
+	private final int tolerance; // The largest channel difference from the seed colour which is filled
+
+	private final BitSet filled; // The pixels within the wedge found to be in the region
+	private int[] stack; // Pixel indices waiting to be filled from
+	private int stackSize; // The number of indices on the stack
+	private int seedColour; // The colour of the pixel the fill began at
+	private int minX; // The smallest x of any filled pixel
+	private int maxX; // The largest x of any filled pixel
+	private int minY; // The smallest y of any filled pixel
+	private int maxY; // The largest y of any filled pixel
+
+	// Creates a fill of the specified drawing, which must be of TYPE_INT_RGB
+	private SymmetricFill(BufferedImage drawing, int sectors, int tolerance) {
+
+		this.pixels = ((DataBufferInt) drawing.getRaster().getDataBuffer()).getData();
+		this.width = drawing.getWidth();
+		this.height = drawing.getHeight();
+		this.centreX = width / 2;
+		this.centreY = height / 2;
+		this.sectors = Math.max(1, sectors);
+		this.tolerance = tolerance;
+
+		this.cos = new double[this.sectors];
+		this.sin = new double[this.sectors];
+		for (int k = 0; k < this.sectors; k++) {
+			cos[k] = Math.cos(Math.PI * 2 * k / this.sectors);
+			sin[k] = Math.sin(Math.PI * 2 * k / this.sectors);
+		}
+
+		this.filled = new BitSet(width * height);
+		this.stack = new int[INITIAL_STACK];
+		this.minX = Integer.MAX_VALUE;
+		this.minY = Integer.MAX_VALUE;
+		this.maxX = -1;
+		this.maxY = -1;
+
+	}
+
+	/**
+	 * Finds the spans of the region around a point in the fundamental wedge of a drawing
+	 *
+	 * @param drawing The drawing, of TYPE_INT_RGB, whose sectors are rotated about its centre
+	 * @param sectors The number of sectors in the drawing
+	 * @param x The x coordinate of the point in the drawing
+	 * @param y The y coordinate of the point in the drawing
+	 * @param reflect If the region around the reflection of the point is also filled
+	 * @param tolerance The largest difference from the colour of the point in any channel of a pixel which is filled
+	 * @return The first and end points of each span of the region in the fundamental wedge, empty if the point is outside the drawing
+	 */
+	public static List<StrokePoint> findSpans(BufferedImage drawing, int sectors, int x, int y, boolean reflect, int tolerance) {
+
+		SymmetricFill fill = new SymmetricFill(drawing, sectors, tolerance);
+
+		if (x < 0 || y < 0 || x >= fill.width || y >= fill.height) return new ArrayList<StrokePoint>();
+
+		fill.seedColour = fill.pixels[y * fill.width + x];
+		fill.seed(x, y);
+		if (reflect) fill.seed(fill.centreX * 2 - x - 1, y);
+		fill.flood();
+
+		return fill.spans();
+	}
+
+	/**
+	 * Returns if a point lies within the fundamental wedge, from angle 0 inclusive to the angle of one sector exclusive,
+	 * measured clockwise on screen from the positive x axis. Only valid for two or more sectors.
+	 *
+	 * @param u The x coordinate of the point relative to the centre of the drawing
+	 * @param v The y coordinate of the point relative to the centre of the drawing
+	 * @param cosWedge The cosine of the angle of one sector
+	 * @param sinWedge The sine of the angle of one sector
+	 * @return true if the point is in the wedge, else false
+	 */
+	static boolean inWedge(double u, double v, double cosWedge, double sinWedge) {
+		return v >= 0 && cosWedge * v - sinWedge * u < 0;
+	}
+
+	// Returns if the centre of a pixel is in the fundamental wedge
+	private boolean inWedge(int x, int y) {
+		return sectors == 1 || inWedge(x + 0.5 - centreX, y + 0.5 - centreY, cos[1], sin[1]);
+	}
+
+	// Returns if a pixel is not yet filled and close enough to the seed colour to be filled
+	private boolean fillable(int x, int y) {
+
+		int index = y * width + x;
+		int pixel;
+
+		if (filled.get(index)) return false;
+
+		pixel = pixels[index];
+
+		return Math.abs(((pixel >> 16) & 0xFF) - ((seedColour >> 16) & 0xFF)) <= tolerance
+				&& Math.abs(((pixel >> 8) & 0xFF) - ((seedColour >> 8) & 0xFF)) <= tolerance
+				&& Math.abs((pixel & 0xFF) - (seedColour & 0xFF)) <= tolerance;
+	}
+
+	// Pushes a pixel to fill from, mapping it into the fundamental wedge if it lies in another sector
+	private void seed(int x, int y) {
+
+		double u;
+		double v;
+		double angle;
+		int k;
+
+		if (!inWedge(x, y)) {
+
+			u = x + 0.5 - centreX;
+			v = y + 0.5 - centreY;
+			angle = Math.atan2(v, u);
+			if (angle < 0) angle += Math.PI * 2;
+			k = Math.min(sectors - 1, (int) (angle * sectors / (Math.PI * 2)));
+
+			// Rotate back by the angle of the sector the pixel lies in
+			x = centreX + (int) Math.floor(u * cos[k] + v * sin[k]);
+			y = centreY + (int) Math.floor(v * cos[k] - u * sin[k]);
+
+			if (!inWedge(x, y)) return;
+		}
+
+		if (x < 0 || y < 0 || x >= width || y >= height) return;
+
+		if (stackSize == stack.length) {
+			int[] larger = new int[stack.length * 2];
+			System.arraycopy(stack, 0, larger, 0, stackSize);
+			stack = larger;
+		}
+
+		stack[stackSize++] = y * width + x;
+	}
+
+	// Fills scanline spans from each seed until there are none left
+	private void flood() {
+
+		int index;
+		int x;
+		int y;
+		int left;
+		int right;
+
+		while (stackSize > 0) {
+
+			index = stack[--stackSize];
+			x = index % width;
+			y = index / width;
+
+			if (!fillable(x, y)) continue;
+
+			// Extend the span left and right along the row until the colour changes or the wedge ends
+			left = x;
+			while (left > 0 && inWedge(left - 1, y) && fillable(left - 1, y)) left--;
+			right = x;
+			while (right < width - 1 && inWedge(right + 1, y) && fillable(right + 1, y)) right++;
+
+			filled.set(y * width + left, y * width + right + 1);
+
+			minX = Math.min(minX, left);
+			maxX = Math.max(maxX, right);
+			minY = Math.min(minY, y);
+			maxY = Math.max(maxY, y);
+
+			// A span ending at the edge of the wedge carries on in the matching place on the other edge
+			if (left > 0 && !inWedge(left - 1, y)) seed(left - 1, y);
+			if (right < width - 1 && !inWedge(right + 1, y)) seed(right + 1, y);
+
+			// Seed the start of each fillable run in the rows above and below
+			if (y > 0) seedRow(left, right, y - 1);
+			if (y < height - 1) seedRow(left, right, y + 1);
+
+		}
+
+	}
+
+	// Seeds the fillable runs of a row beside a filled span
+	private void seedRow(int left, int right, int y) {
+
+		boolean inRun = false;
+
+		for (int x = left; x <= right; x++) {
+
+			if (!inWedge(x, y)) {
+				seed(x, y);
+				inRun = false;
+			} else if (fillable(x, y)) {
+				if (!inRun) seed(x, y);
+				inRun = true;
+			} else {
+				inRun = false;
+			}
+
+		}
+
+	}
+
+	// Returns the filled pixels as spans, including the pixels just outside the wedge so rotated copies leave no gaps
+	private List<StrokePoint> spans() {
+
+		List<StrokePoint> spans = new ArrayList<StrokePoint>();
+		BitSet edge = new BitSet(width * height);
+		int start;
+
+		if (maxX < 0) return spans;
+
+		// Pixels outside the wedge touching the region are partly covered by it
+		if (sectors > 1) {
+			for (int y = minY; y <= maxY; y++) {
+				for (int x = filled.nextSetBit(y * width + minX) - y * width; x >= 0 && x <= maxX; x = filled.nextSetBit(y * width + x + 1) - y * width) {
+					for (int dy = Math.max(0, y - 1); dy <= Math.min(height - 1, y + 1); dy++) {
+						for (int dx = Math.max(0, x - 1); dx <= Math.min(width - 1, x + 1); dx++) {
+							if (!inWedge(dx, dy)) edge.set(dy * width + dx);
+						}
+					}
+				}
+			}
+			edge.or(filled);
+		} else {
+			edge = filled;
+		}
+
+		for (int y = Math.max(0, minY - 1); y <= Math.min(height - 1, maxY + 1); y++) {
+
+			start = -1;
+
+			for (int x = Math.max(0, minX - 1); x <= Math.min(width - 1, maxX + 1) + 1; x++) {
+
+				if (x <= Math.min(width - 1, maxX + 1) && edge.get(y * width + x)) {
+					if (start < 0) start = x;
+				} else if (start >= 0) {
+					spans.add(new StrokePoint(start - centreX, y - centreY));
+					spans.add(new StrokePoint(x - centreX, y - centreY));
+					start = -1;
+				}
+
+			}
+
+		}
+
+		return spans;
+	}
+
+}